@@ -0,0 +1,69 @@
+import java.io.IOException;
+
+/**
+ * Écrivain de fond du BufferManager (bm_writerdelay > 0) : toutes les bm_writerdelay ms, il écrit
+ * au plus bm_writerpages frames dirty non épinglées, prises dans l'ordre où la politique de
+ * remplacement les éjecterait (cf. BufferManager.cleanAhead). Une victime est ainsi le plus souvent
+ * déjà propre quand un défaut de cache la réclame : la lecture n'attend pas une écriture.
+ *
+ * Le thread n'est jamais interrompu (une interruption pendant une E/S fermerait le FileChannel) :
+ * stop() le réveille et attend la fin du passage en cours.
+ */
+final class BackgroundWriter implements Runnable {
+    private final BufferManager bm;
+    private final long delayMs;
+    private final int pages;
+    private final int dirtyRatio;
+    private final Thread thread;
+    private boolean running = true; // protégé par this
+
+    BackgroundWriter(BufferManager bm, DBConfig cfg) {
+        this.bm = bm;
+        this.delayMs = cfg.getBm_writerdelay();
+        this.pages = cfg.getBm_writerpages();
+        this.dirtyRatio = cfg.getBm_dirtyratio();
+        this.thread = new Thread(this, "bm-writer");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            synchronized (this) {
+                if (!running) return;
+                try {
+                    wait(delayMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!running) return;
+            }
+            try {
+                bm.cleanAhead(pages, dirtyRatio);
+            } catch (IOException | RuntimeException e) {
+                // la page reste dirty : elle sera réécrite au passage suivant ou à l'éjection
+                System.err.println("bm-writer : " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,149 +1,1327 @@
 import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 /**
- * BufferManager: gère un pool de buffers (frames) et applique une politique de remplacement LRU/MRU.
- * API minimale demandée par le TP3.
+ * BufferManager: gère un pool de buffers (frames) et applique une politique de remplacement
+ * (bm_policy : LRU, MRU, CLOCK ou 2Q, cf. ReplacementPolicy). API minimale demandée par le TP3.
+ *
+ * Concurrence : aucun verrou global n'est pris pendant une E/S.
+ * - la table des pages est une LongIntMap indexée par PageId.toLong() (lecture sans verrou ni
+ *   allocation : GetPage(long)/FreePage(long, ..) servent un accès en cache sans créer d'objet) ;
+ * - pinCount est modifié par CAS ; -1 signifie que la frame est réservée (éjection ou chargement
+ *   en préparation) et ne peut pas être épinglée ;
+ * - une page en cours de lecture porte une future « loaded » : le premier thread en défaut charge
+ *   la page, les suivants l'épinglent et attendent la même lecture au lieu d'en refaire une ;
+ * - seul le choix d'une frame est sérialisé (replacementLock) : une frame libre est prise dans la
+ *   file freeFrames, sinon une victime est demandée à la politique. La réécriture d'une victime dirty
+ *   se fait ensuite hors de ce verrou, sous le latch de la frame : un thread qui demande la page
+ *   éjectée attend la fin de l'écriture avant de la relire, il ne peut donc pas lire une version
+ *   périmée sur disque.
+ *
+ * Mémoire : avec bm_offheap=true, les frames sont des tranches d'une arène de ByteBuffer directs
+ * (hors tas, donc ignorée par le GC) et le DiskManager lit/écrit directement dedans. Les pages
+ * s'obtiennent alors par GetPageBuffer ; GetPage, qui retourne un byte[], n'est disponible qu'avec
+ * le pool sur le tas.
+ *
+ * Écriture de fond : avec bm_writerdelay > 0, un BackgroundWriter nettoie les prochaines victimes
+ * (cleanAhead) ; Close() l'arrête.
+ *
+ * Points de contrôle : Checkpoint écrit toutes les pages dirty triées par (fileIdx,pageIdx), les
+ * pages contiguës en une seule écriture, sans vider le pool (contrairement à FlushBuffers). Avec
+ * bm_checkpointdelay > 0, un Checkpointer fait de même en fond, par lots, au plus
+ * bm_checkpointrate pages par seconde ; Close() l'arrête aussi.
+ *
+ * Lecture anticipée (bm_readahead > 0) : deux défauts consécutifs sur des pages voisines d'un même
+ * fichier (pageIdx croissants ou décroissants) lancent la lecture asynchrone des bm_readahead pages
+ * suivantes dans des frames non épinglées ; le premier accès à l'une d'elles prolonge la fenêtre
+ * d'une page. Prefetch permet aussi d'annoncer explicitement les prochaines pages d'un parcours.
+ *
+ * Latches de contenu : GetPageShared/GetPageExclusive retournent un PageHandle qui tient le latch
+ * partagé ou exclusif de la frame jusqu'à sa fermeture. Les écritures vers le disque (FlushBuffers,
+ * écrivain de fond) copient chaque page sous son latch partagé : elles ne voient jamais une page
+ * en cours de modification par un handle exclusif.
+ *
+ * Lectures optimistes : ReadOptimistic lit une page en cache sans pin ni latch ni écriture dans la
+ * frame (hors compteurs et marque d'accès de la politique). Chaque frame porte une version
+ * (seqlock), impaire pendant tout changement de son contenu par le pool ou par un handle exclusif :
+ * la lecture est validée si la version n'a pas bougé, sinon refaite. Comme pour GetPageShared, les écritures faites par
+ * GetPage/FreePage ne sont pas couvertes.
+ *
+ * Taille : le pool grandit ou rétrécit à chaud par Resize ; avec bm_memorybudget, sa taille initiale
+ * est déduite d'un budget mémoire au lieu de bm_buffercount. Les frames retirées restent dans le
+ * tableau (réservées) pour que les index déjà publiés restent valides ; sur le tas leur mémoire est
+ * rendue, hors tas leur tranche est gardée pour le prochain agrandissement.
+ *
+ * Statistiques : getStats() (hits, misses, éjections, écritures, attentes, par relation).
  */
 public class BufferManager {
-    public enum Policy { LRU, MRU }
-
     public static class Frame {
-        PageId pageId;        // page chargée ou null si frame libre
-        byte[] data;          // contenu de la page
-        int pinCount = 0;     // nombre de pins
-        boolean dirty = false;// flag dirty
-        long lastTouch = 0;   // timestamp pour LRU/MRU
+        final int index;                           // position dans le pool
+        volatile PageId pageId;                    // page chargée ou null si frame libre
+        volatile long key = NO_PAGE;               // pageId.toLong(), NO_PAGE si frame libre
+        byte[] data;                               // contenu de la page (pool sur le tas), null hors tas
+        ByteBuffer buffer;                         // vue sur la page : data enveloppé ou tranche de l'arène
+        volatile int pinCount = 0;                 // nombre de pins, -1 = frame réservée
+        volatile boolean dirty = false;            // flag dirty
+        volatile long lastTouch = 0;               // timestamp du dernier accès (inspection)
+        volatile CompletableFuture<Void> loaded;   // non null pendant la lecture de la page
+        final ReentrantLock latch = new ReentrantLock(); // tenu pendant toute écriture de la page sur disque
+        final ReentrantReadWriteLock contentLatch = new ReentrantReadWriteLock(); // latch des PageHandle
+        volatile ScanRing ring;                    // anneau qui détient la frame (hors politique), null sinon
+        volatile boolean prefetched;               // chargée par la lecture anticipée séquentielle, pas encore lue
+        boolean retired;                           // retirée par Resize (pinCount reste à -1), sous resizeLock
+        boolean queued;                            // présente dans freeFrames, sous replacementLock
+        volatile long version;                     // seqlock de ReadOptimistic : impair pendant un changement
+        ByteBuffer readView;                       // vue en lecture seule partagée par les lectures optimistes
+
+        Frame(int index) { this.index = index; }
     }
 
+    private static final long NO_PAGE = Long.MIN_VALUE;
+    private static final int CHECKPOINT_BATCH = 64;               // pages épinglées au plus par lot de Checkpoint
+    private static final int WRITE_BUFFER = 256 * 1024;           // buffer d'écriture d'un thread (writePinned)
+    private static final int OPTIMISTIC_ATTEMPTS = 4;             // lectures sans pin avant GetPageShared
+    private static final AtomicIntegerFieldUpdater<Frame> PIN = AtomicIntegerFieldUpdater.newUpdater(Frame.class, "pinCount");
+
     private final DBConfig cfg;
     private final DiskManager dm;
-    private Policy policy;
-    private final Frame[] frames;
-    private final Map<PageId, Integer> pageTable = new HashMap<>(); // PageId -> frame index
+    private volatile ReplacementPolicy replacer;
+    private volatile Frame[] frames;            // ne fait que grandir : un index lu dans la table reste valide
+    private volatile int active;                // frames utilisables (hors frames retirées par Resize)
+    private final Object resizeLock = new Object();
+    private final LongIntMap pageTable;         // PageId.toLong() -> index de frame
+    private final Object replacementLock = new Object();
+    private final ArrayDeque<Integer> freeFrames = new ArrayDeque<>(); // frames vides hors anneau, sous replacementLock
+    private final boolean offHeap;
+    private final byte[] zeroPage;
+    private final BackgroundWriter writer;
+    private final Checkpointer checkpointer;
+    private final BufferStats stats = new BufferStats();
+    private final ThreadLocal<ByteBuffer> writeBuffer = new ThreadLocal<>(); // voir writeBuffer()
+    private int arenaChunks;                       // blocs directs alloués (constructeur, puis sous resizeLock)
+    private final int readAhead;
+    private final Map<Integer, SequentialState> sequential = new ConcurrentHashMap<>(); // fileIdx -> dernier défaut
+
+    // Détection d'accès séquentiel dans un fichier (heuristique : pas de précision entre threads)
+    private static final class SequentialState {
+        int last = -1; // pageIdx du dernier défaut
+        int stride;    // +1 ou -1
+        boolean run;   // deux défauts consécutifs voisins observés
+    }
+
+    /** Taille max d'un bloc de l'arène hors tas (un ByteBuffer est limité à 2 Go) */
+    private static final int ARENA_CHUNK = 1 << 30;
+    /** Alignement de l'arène : les frames restent alignées pour dm_iomode=DIRECT (pagesize multiple de 4096) */
+    private static final int ARENA_ALIGN = 4096;
 
     public BufferManager(DBConfig cfg, DiskManager dm) {
         this.cfg = cfg;
         this.dm = dm; // do NOT copy
-        this.policy = parsePolicy(cfg.getBm_policy());
-        int n = Math.max(1, cfg.getBm_buffercount());
+        int n = frameCount(cfg);
+        this.replacer = ReplacementPolicy.create(cfg.getBm_policy(), n);
         this.frames = new Frame[n];
+        this.pageTable = new LongIntMap(n);
+        this.offHeap = cfg.isBm_offheap();
+        this.zeroPage = new byte[cfg.getPagesize()];
+        this.readAhead = cfg.getBm_readahead();
+        ByteBuffer[] arena = offHeap ? allocateArena(n) : null;
         for (int i = 0; i < n; i++) {
-            frames[i] = new Frame();
-            frames[i].data = new byte[cfg.getPagesize()];
+            frames[i] = new Frame(i);
+            giveMemory(frames[i], arena, i);
+            frames[i].queued = true;
+            freeFrames.add(i);
+        }
+        this.active = n;
+        this.writer = cfg.getBm_writerdelay() > 0 ? new BackgroundWriter(this, cfg) : null;
+        if (writer != null) writer.start();
+        this.checkpointer = cfg.getBm_checkpointdelay() > 0 ? new Checkpointer(this, cfg) : null;
+        if (checkpointer != null) checkpointer.start();
+    }
+
+    /**
+     * Découpe n frames de pagesize octets dans des blocs directs d'au plus ARENA_CHUNK octets
+     * (une seule allocation par bloc au lieu d'un tableau par frame).
+     */
+    private ByteBuffer[] allocateArena(int n) {
+        int pagesize = cfg.getPagesize();
+        ByteBuffer[] slices = new ByteBuffer[n];
+        int perChunk = Math.max(1, ARENA_CHUNK / pagesize);
+        for (int first = 0; first < n; first += perChunk) {
+            int count = Math.min(perChunk, n - first);
+            // alignedSlice arrondit aussi la limite : taille arrondie au multiple supérieur de l'alignement
+            int size = (count * pagesize + ARENA_ALIGN - 1) / ARENA_ALIGN * ARENA_ALIGN;
+            ByteBuffer chunk = ByteBuffer.allocateDirect(size + ARENA_ALIGN).alignedSlice(ARENA_ALIGN);
+            arenaChunks++;
+            for (int k = 0; k < count; k++) slices[first + k] = chunk.slice(k * pagesize, pagesize);
         }
+        return slices;
     }
+    /**
+     * Nombre de frames du pool pour cfg : bm_memorybudget / pagesize si un budget est donné (le
+     * pourcentage porte sur la mémoire max du tas, ou sur la mémoire directe max avec bm_offheap),
+     * sinon bm_buffercount.
+     */
+    static int frameCount(DBConfig cfg) {
+        return budgetFrames(cfg.getBm_memorybudget(), cfg);
+    }
+
+    private static int budgetFrames(String budget, DBConfig cfg) {
+        long bytes = DBConfig.parseMemoryBudget(budget, maxPoolMemory(cfg.isBm_offheap()));
+        if (bytes < 0) return Math.max(1, cfg.getBm_buffercount());
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, bytes / cfg.getPagesize()));
+    }
+
+    // Mémoire max utilisable par le pool : tas (-Xmx) ou mémoire directe (-XX:MaxDirectMemorySize,
+    // égale par défaut à la taille max du tas)
+    private static long maxPoolMemory(boolean offHeap) {
+        long heap = Runtime.getRuntime().maxMemory();
+        if (!offHeap) return heap;
+        try {
+            com.sun.management.HotSpotDiagnosticMXBean vm = java.lang.management.ManagementFactory
+                    .getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+            long direct = Long.parseLong(vm.getVMOption("MaxDirectMemorySize").getValue());
+            return direct > 0 ? direct : heap;
+        } catch (RuntimeException | LinkageError e) {
+            return heap; // JVM sans cette option
+        }
+    }
+
     public DBConfig getConfig() {
         return cfg;
     }
 
-    private Policy parsePolicy(String pol) {
-        if (pol == null) return Policy.LRU;
-        String p = pol.trim().toUpperCase();
-        if (p.equals("MRU")) return Policy.MRU;
-        return Policy.LRU;
+    /**
+     * Change à chaud le nombre de frames du pool et retourne le nombre obtenu.
+     * - agrandissement : les frames retirées par un Resize précédent reprennent du service, puis le
+     *   tableau est étendu (la politique de remplacement est reconstruite pour la nouvelle capacité) ;
+     * - réduction : des frames libres, puis des victimes choisies par la politique, sont vidées
+     *   (réécrites si dirty) et retirées. Sur le tas, leur tableau est rendu au GC ; avec bm_offheap,
+     *   leur tranche reste à la frame (un bloc direct n'est libéré qu'en entier) et resert au prochain
+     *   agrandissement, qui n'alloue de bloc que pour les frames nouvelles. Les frames épinglées ou
+     *   détenues par un anneau ne sont pas retirées : le pool peut rester plus grand que n.
+     */
+    public int Resize(int n) throws IOException {
+        n = Math.max(1, n);
+        synchronized (resizeLock) {
+            if (n > active) grow(n - active);
+            while (active > n) {
+                int idx;
+                synchronized (replacementLock) {
+                    idx = claimFreeFrame();
+                    if (idx < 0) idx = claimVictim();
+                }
+                if (idx < 0) break; // le reste est épinglé
+                try {
+                    evictVictim(idx);
+                } catch (IOException | RuntimeException e) {
+                    frames[idx].pinCount = 0;
+                    throw e;
+                }
+                retire(frames[idx]);
+            }
+            return active;
+        }
     }
 
-    public synchronized byte[] GetPage(PageId pageId) throws IOException {
-        // Si déjà en cache
-        Integer idx = pageTable.get(pageId);
-        if (idx != null) {
-            Frame f = frames[idx];
-            f.pinCount++;
-            f.lastTouch = System.nanoTime();
-            return f.data;
+    /** Resize au nombre de frames que permet budget (même syntaxe que bm_memorybudget) */
+    public int ResizeToBudget(String budget) throws IOException {
+        if (DBConfig.parseMemoryBudget(budget, 1L << 30) < 0) throw new IllegalArgumentException("Budget mémoire invalide : " + budget);
+        return Resize(budgetFrames(budget, cfg));
+    }
+
+    // Frame réservée et vide : elle reste réservée (pinCount = -1) pour toujours ou jusqu'à ce que grow
+    // la réutilise. Sa mémoire est rendue sur le tas ; hors tas, la tranche est gardée pour grow
+    private void retire(Frame f) {
+        f.retired = true;
+        if (!offHeap) {
+            f.data = null;
+            f.buffer = null;
+            f.readView = null;
+        }
+        active--;
+    }
+
+    // Ajoute count frames : d'abord les frames retirées (hors tas, avec leur tranche), puis de nouvelles
+    // en fin de tableau, seules à recevoir un bloc neuf
+    private void grow(int count) {
+        int k = 0;
+        for (Frame f : frames) {
+            if (k == count) break;
+            if (!f.retired) continue;
+            if (!offHeap) giveMemory(f, null, 0);
+            k++;
+            f.retired = false;
+            active++;
+            f.pinCount = 0; // publie la mémoire avant toute réservation
+            queueFree(f);
+        }
+        if (k == count) return;
+        ByteBuffer[] arena = offHeap ? allocateArena(count - k) : null;
+        synchronized (replacementLock) {
+            Frame[] old = frames;
+            Frame[] next = Arrays.copyOf(old, old.length + count - k);
+            for (int i = old.length; i < next.length; i++) {
+                next[i] = new Frame(i);
+                giveMemory(next[i], arena, i - old.length);
+            }
+            // la politique doit connaître les nouveaux index avant qu'une frame y soit chargée
+            installPolicy(ReplacementPolicy.create(replacer.name(), next.length), next);
+            for (int i = old.length; i < next.length; i++) queueFree(next[i]);
+            active = next.length - countRetired(next);
         }
+    }
 
-        // Sinon, chercher une frame libre
-        int freeIdx = findFreeFrame();
-        if (freeIdx == -1) {
-            // appliquer la politique de remplacement
-            freeIdx = selectVictim();
-            if (freeIdx == -1) throw new IOException("Aucune frame éjectable (toutes pinCount>0)");
-            evict(freeIdx);
+    private void giveMemory(Frame f, ByteBuffer[] arena, int k) {
+        if (arena != null) {
+            f.buffer = arena[k];
+        } else {
+            f.data = new byte[cfg.getPagesize()];
+            f.buffer = ByteBuffer.wrap(f.data);
         }
+        f.readView = f.buffer.asReadOnlyBuffer();
+    }
 
-        // Charger la page
-        Frame f = frames[freeIdx];
-        Arrays.fill(f.data, (byte)0);
-        dm.ReadPage(pageId, f.data);
-        f.pageId = pageId;
-        f.pinCount = 1;
-        f.dirty = false;
+    // Nombre de blocs directs alloués depuis la création (bm_offheap), pour les tests
+    int getArenaChunks() {
+        synchronized (resizeLock) {
+            return arenaChunks;
+        }
+    }
+
+    private static int countRetired(Frame[] fs) {
+        int n = 0;
+        for (Frame f : fs) {
+            if (f.retired) n++;
+        }
+        return n;
+    }
+
+    public byte[] GetPage(PageId pageId) throws IOException {
+        return GetPage(pageId, null);
+    }
+
+    /**
+     * GetPage pour un parcours séquentiel : en cas de défaut, la page est chargée dans une frame
+     * de l'anneau ring (cf. ScanRing) au lieu d'une victime du pool partagé. Une page déjà en cache
+     * est retournée telle quelle. ring == null : équivalent à GetPage(pageId).
+     */
+    public byte[] GetPage(PageId pageId, ScanRing ring) throws IOException {
+        requireHeap();
+        return fetch(pageId.toLong(), pageId, ring, null).data;
+    }
+
+    /**
+     * GetPage par identifiant PageId.pack(fileIdx, pageIdx) : un accès en cache n'alloue rien (le
+     * PageId n'est créé qu'en cas de lecture sur disque). Libérer par FreePage(long, ..).
+     */
+    public byte[] GetPage(long pageKey) throws IOException {
+        requireHeap();
+        return fetch(pageKey, null, null, null).data;
+    }
+
+    /**
+     * Comme GetPage, mais retourne une vue ByteBuffer (accès absolus, position 0, limite pagesize)
+     * sur la frame épinglée : disponible dans les deux modes (tas ou bm_offheap). Les écritures dans
+     * la vue modifient la frame ; libérer ensuite par FreePage.
+     */
+    public ByteBuffer GetPageBuffer(PageId pageId) throws IOException {
+        return GetPageBuffer(pageId, null);
+    }
+
+    public ByteBuffer GetPageBuffer(PageId pageId, ScanRing ring) throws IOException {
+        return fetch(pageId.toLong(), pageId, ring, null).buffer.duplicate();
+    }
+
+    /**
+     * Épingle la page et prend son latch partagé : lecture seule, compatible avec d'autres lecteurs.
+     * À fermer (try-with-resources) par le thread appelant.
+     */
+    public PageHandle GetPageShared(PageId pageId) throws IOException {
+        return GetPageShared(pageId, null);
+    }
+
+    public PageHandle GetPageShared(PageId pageId, ScanRing ring) throws IOException {
+        return GetPageShared(pageId, ring, null);
+    }
+
+    /** GetPageShared dont l'accès est aussi compté dans rel (BufferStats.relation), si non null */
+    public PageHandle GetPageShared(PageId pageId, ScanRing ring, BufferStats.Counters rel) throws IOException {
+        return GetPageShared(pageId.toLong(), pageId, ring, rel);
+    }
+
+    /** GetPageShared par identifiant PageId.pack(fileIdx, pageIdx) */
+    public PageHandle GetPageShared(long pageKey, ScanRing ring, BufferStats.Counters rel) throws IOException {
+        return GetPageShared(pageKey, null, ring, rel);
+    }
+
+    private PageHandle GetPageShared(long pageKey, PageId pageId, ScanRing ring, BufferStats.Counters rel) throws IOException {
+        Frame f = fetch(pageKey, pageId, ring, rel);
+        if (!f.contentLatch.readLock().tryLock()) {
+            stats.latchWaits.increment();
+            f.contentLatch.readLock().lock();
+        }
+        return new PageHandle(this, pageKey, f, f.buffer.asReadOnlyBuffer(), false);
+    }
+
+    /**
+     * Épingle la page et prend son latch exclusif (attend la fermeture des handles en cours sur la
+     * page) ; la page est marquée dirty à la fermeture du handle.
+     */
+    public PageHandle GetPageExclusive(PageId pageId) throws IOException {
+        return GetPageExclusive(pageId, null);
+    }
+
+    public PageHandle GetPageExclusive(PageId pageId, BufferStats.Counters rel) throws IOException {
+        return GetPageExclusive(pageId.toLong(), pageId, rel);
+    }
+
+    /** GetPageExclusive par identifiant PageId.pack(fileIdx, pageIdx) */
+    public PageHandle GetPageExclusive(long pageKey, BufferStats.Counters rel) throws IOException {
+        return GetPageExclusive(pageKey, null, rel);
+    }
+
+    private PageHandle GetPageExclusive(long pageKey, PageId pageId, BufferStats.Counters rel) throws IOException {
+        Frame f = fetch(pageKey, pageId, null, rel);
+        if (!f.contentLatch.writeLock().tryLock()) {
+            stats.latchWaits.increment();
+            f.contentLatch.writeLock().lock();
+        }
+        beginChange(f);
+        return new PageHandle(this, pageKey, f, f.buffer.duplicate(), true);
+    }
+
+    /**
+     * Lecture optimiste : applique reader à une vue en lecture seule de la page et retourne son
+     * résultat. Page en cache : ni pin ni latch, la lecture est refaite si la frame a changé
+     * pendant reader (éjection, chargement, handle exclusif) ; après quelques échecs, ou si la page
+     * n'est pas en cache, elle passe par GetPageShared. Le chemin rapide n'écrit rien dans la frame :
+     * le hit va dans un LongAdder et la politique est prévenue par son onAccess sans verrou (bit de
+     * référence CLOCK ou date LRU, écrits seulement s'ils ne sont pas déjà posés), si bien qu'une
+     * page lue seulement de cette façon reste chaude. lastTouch n'est pas mis à jour.
+     *
+     * reader peut donc voir une page incohérente, dont il ne doit rien garder : il n'utilise que des
+     * accès absolus (la vue est partagée entre threads), ne boucle pas sur des valeurs lues sans
+     * borne, et ses exceptions ne sont propagées que si la page était stable pendant la lecture.
+     */
+    public <T> T ReadOptimistic(PageId pageId, Function<ByteBuffer, T> reader) throws IOException {
+        return ReadOptimistic(pageId.toLong(), null, reader);
+    }
+
+    /** ReadOptimistic par identifiant PageId.pack(fileIdx, pageIdx), compté aussi dans rel si non null */
+    public <T> T ReadOptimistic(long pageKey, BufferStats.Counters rel, Function<ByteBuffer, T> reader) throws IOException {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            int idx = pageTable.get(pageKey);
+            if (idx < 0) break; // défaut de cache : chargement par GetPageShared
+            Frame f = frames[idx];
+            long v = f.version;
+            ByteBuffer view = f.readView;
+            if ((v & 1) == 0 && f.key == pageKey && view != null) {
+                T result;
+                try {
+                    result = reader.apply(view);
+                } catch (RuntimeException e) {
+                    VarHandle.acquireFence();
+                    if (f.version == v) throw e; // erreur de reader sur une page stable
+                    result = null;
+                }
+                VarHandle.acquireFence(); // les lectures de la page précèdent la validation
+                if (f.version == v) {
+                    stats.hit(rel);
+                    // marque d'accès de la politique, écrite seulement si elle n'est pas déjà posée
+                    if (f.ring == null) replacer.onAccess(idx);
+                    return result;
+                }
+            }
+            stats.optimisticRetries.increment();
+            Thread.onSpinWait();
+        }
+        stats.optimisticFallbacks.increment();
+        try (PageHandle h = GetPageShared(pageKey, null, null, rel)) {
+            return reader.apply(h.buffer());
+        }
+    }
+
+    // Fermeture d'un PageHandle : dirty (exclusif) avant de relâcher le latch, puis dépin
+    void release(PageHandle h) {
+        Frame f = h.frame;
+        if (h.isExclusive()) {
+            f.dirty = true;
+            endChange(f);
+            f.contentLatch.writeLock().unlock();
+        } else {
+            f.contentLatch.readLock().unlock();
+        }
         f.lastTouch = System.nanoTime();
-        pageTable.put(pageId, freeIdx);
-        return f.data;
+        unpin(f);
+    }
+
+    private void requireHeap() {
+        if (offHeap) throw new IllegalStateException("Pool hors tas (bm_offheap) : utiliser GetPageBuffer");
+    }
+
+    // Épingle la page key (chargée si besoin) et retourne sa frame ; pageId peut être null (créé
+    // seulement en cas de défaut) ; l'accès est compté dans rel si non null
+    private Frame fetch(long key, PageId pageId, ScanRing ring, BufferStats.Counters rel) throws IOException {
+        while (true) {
+            // Si déjà en cache (ou en cours de chargement par un autre thread)
+            Frame f = pinCached(key);
+            if (f != null) {
+                awaitLoaded(f);
+                if (f.key == key) {
+                    if (f.prefetched) {
+                        f.prefetched = false;
+                        extendReadAhead(f.pageId, ring);
+                    }
+                    touch(f);
+                    stats.hit(rel);
+                    return f;
+                }
+                unpinFree(f); // lecture échouée chez le thread qui chargeait : réessayer nous-mêmes
+                continue;
+            }
+
+            // Sinon, réserver une frame (libre ou victime, ou la suivante de l'anneau) et charger la page
+            if (pageId == null) pageId = PageId.fromLong(key);
+            long start = System.nanoTime();
+            int idx = ring == null ? claimFrame() : claimRingFrame(ring);
+            f = frames[idx];
+            if (!publish(pageId, idx)) continue; // un autre thread charge déjà cette page
+            try {
+                dm.ReadPage(pageId, f.buffer);
+            } catch (IOException | RuntimeException e) {
+                abortLoad(idx, e);
+                unpinFree(f);
+                throw e;
+            }
+            finishLoad(f);
+            touch(f);
+            stats.miss(rel, System.nanoTime() - start);
+            detectSequential(pageId, ring);
+            return f;
+        }
+    }
+
+    /**
+     * Charge et épingle plusieurs pages d'un coup : les défauts de cache sont lus en parallèle
+     * via DiskManager.readPageAsync au lieu d'être traités l'un après l'autre.
+     * Chaque page retournée doit ensuite être libérée par FreePage, comme avec GetPage.
+     * Si une lecture échoue, aucune page ne reste épinglée.
+     */
+    public List<byte[]> GetPages(List<PageId> pageIds) throws IOException {
+        requireHeap();
+        List<byte[]> result = new ArrayList<>(pageIds.size());
+        for (Frame f : fetchAll(pageIds)) result.add(f.data);
+        return result;
+    }
+
+    /** GetPages retournant des vues ByteBuffer (cf. GetPageBuffer), disponible dans les deux modes */
+    public List<ByteBuffer> GetPageBuffers(List<PageId> pageIds) throws IOException {
+        List<ByteBuffer> result = new ArrayList<>(pageIds.size());
+        for (Frame f : fetchAll(pageIds)) result.add(f.buffer.duplicate());
+        return result;
+    }
+
+    private List<Frame> fetchAll(List<PageId> pageIds) throws IOException {
+        List<Frame> pinned = new ArrayList<>();
+        List<CompletableFuture<ByteBuffer>> reads = new ArrayList<>();
+        try {
+            for (PageId pid : pageIds) {
+                while (true) {
+                    Frame f = pinCached(pid.toLong());
+                    if (f == null) {
+                        // réserver une frame et lancer la lecture sans attendre
+                        long start = System.nanoTime();
+                        int idx = claimFrame();
+                        if (!publish(pid, idx)) continue;
+                        f = frames[idx];
+                        final Frame loading = f;
+                        reads.add(dm.readPageAsync(pid, f.buffer).whenComplete((r, ex) -> {
+                            if (ex == null) {
+                                finishLoad(loading);
+                                stats.miss(null, System.nanoTime() - start);
+                            } else {
+                                abortLoad(idx, ex);
+                            }
+                        }));
+                    } else {
+                        stats.hit(null);
+                    }
+                    pinned.add(f);
+                    break;
+                }
+            }
+            for (Frame f : pinned) {
+                awaitLoaded(f);
+                touch(f);
+            }
+            for (int k = 0; k < pinned.size(); k++) {
+                if (!pageIds.get(k).equals(pinned.get(k).pageId)) throw new IOException("Lecture de " + pageIds.get(k) + " échouée");
+            }
+            return pinned;
+        } catch (IOException | RuntimeException e) {
+            // attendre les lectures lancées avant de rendre leurs frames
+            for (CompletableFuture<ByteBuffer> r : reads) {
+                try { r.join(); } catch (CompletionException ignored) {}
+            }
+            for (Frame f : pinned) unpinFree(f);
+            if (e instanceof CompletionException && e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Lance la lecture asynchrone des pages indiquées qui ne sont pas en cache, dans des frames
+     * laissées non épinglées (dans l'anneau ring s'il n'est pas null : en passer au plus
+     * getReadAheadWindow(ring) pour ne pas recycler la page en cours). Ne bloque pas sur les lectures et
+     * s'arrête sans erreur quand aucune frame n'est disponible ; un GetPage ultérieur attend la
+     * lecture en cours au lieu d'en refaire une.
+     */
+    public void Prefetch(List<PageId> pageIds, ScanRing ring) {
+        for (PageId pid : pageIds) {
+            if (!prefetchOne(pid, ring, false)) return;
+        }
+    }
+
+    public void Prefetch(List<PageId> pageIds) {
+        Prefetch(pageIds, null);
+    }
+
+    /**
+     * Nombre de pages à lire par anticipation : bm_readahead, borné dans un anneau à ring.size() - 2
+     * (une frame pour la page en cours, une pour la précédente dont la lecture peut ne pas être
+     * encore tout à fait terminée).
+     */
+    public int getReadAheadWindow(ScanRing ring) {
+        return ring == null ? readAhead : Math.max(0, Math.min(readAhead, ring.size() - 2));
+    }
+
+    // Défaut sur pageId : si le précédent défaut du fichier était la page voisine, lire la suite
+    private void detectSequential(PageId pageId, ScanRing ring) {
+        int window = getReadAheadWindow(ring);
+        if (window <= 0) return;
+        SequentialState st = sequential.computeIfAbsent(pageId.getFileIdx(), k -> new SequentialState());
+        int stride;
+        synchronized (st) {
+            int d = pageId.getPageIdx() - st.last;
+            st.run = st.last >= 0 && (d == 1 || d == -1) && (!st.run || d == st.stride);
+            st.stride = d;
+            st.last = pageId.getPageIdx();
+            if (!st.run) return;
+            stride = d;
+        }
+        for (int k = 1; k <= window; k++) {
+            if (!prefetchOne(new PageId(pageId.getFileIdx(), pageId.getPageIdx() + k * stride), ring, true)) return;
+        }
+    }
+
+    // Premier accès à une page lue par anticipation : la fenêtre avance d'une page
+    private void extendReadAhead(PageId pageId, ScanRing ring) {
+        int window = getReadAheadWindow(ring);
+        SequentialState st = sequential.get(pageId.getFileIdx());
+        if (window <= 0 || st == null) return;
+        int stride;
+        synchronized (st) {
+            if (!st.run) return;
+            stride = st.stride;
+            st.last = pageId.getPageIdx();
+        }
+        prefetchOne(new PageId(pageId.getFileIdx(), pageId.getPageIdx() + window * stride), ring, true);
+    }
+
+    /**
+     * Lecture anticipée d'une page : réserve une frame, publie la page (les threads qui la
+     * demandent attendent la lecture) et lance la lecture sans attendre ; la frame est dépinglée
+     * à la fin de la lecture. false si aucune frame n'est disponible.
+     */
+    private boolean prefetchOne(PageId pid, ScanRing ring, boolean sequentialHit) {
+        if (pageTable.containsKey(pid.toLong()) || !dm.isAllocated(pid)) return true;
+        int idx;
+        try {
+            idx = ring == null ? claimFrame() : claimRingFrame(ring);
+        } catch (IOException e) {
+            return false; // toutes les frames épinglées (ou réécriture de la victime impossible)
+        }
+        final int claimed = idx;
+        Frame f = frames[claimed];
+        if (!publish(pid, claimed)) return true;
+        f.prefetched = sequentialHit;
+        stats.prefetches.increment();
+        dm.readPageAsync(pid, f.buffer).whenComplete((r, ex) -> {
+            if (ex == null) finishLoad(f);
+            else abortLoad(claimed, ex);
+            unpinFree(f);
+        });
+        return true;
+    }
+
+    /**
+     * Lecture seule sans pin : retourne une vue de la page pour un parcours en lecture.
+     * - page dirty dans le pool : copie de la frame (le disque n'est pas à jour) ;
+     * - DiskManager en mode MMAP : tranche du fichier mappé, sans copie ni frame occupée ;
+     * - sinon : chargement normal via GetPage puis copie de la frame.
+     * Aucun FreePage n'est nécessaire après l'appel.
+     */
+    public ByteBuffer GetPageView(PageId pageId) throws IOException {
+        Frame cached = pinCached(pageId.toLong());
+        if (cached != null) {
+            try {
+                awaitLoaded(cached);
+                if (pageId.equals(cached.pageId) && cached.dirty) {
+                    stats.hit(null);
+                    return copyOf(cached);
+                }
+            } finally {
+                unpinFree(cached);
+            }
+        }
+        if (dm.isMemoryMapped()) {
+            ByteBuffer view = dm.MapPage(pageId);
+            if (view != null) return view;
+        }
+        ByteBuffer copy = copyOf(fetch(pageId.toLong(), pageId, null, null));
+        FreePage(pageId, false);
+        return copy;
+    }
+
+    private ByteBuffer copyOf(Frame f) {
+        byte[] data = new byte[cfg.getPagesize()];
+        f.buffer.get(0, data);
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Crée un anneau de bm_scanring frames pour un parcours complet, ou null si le pool est trop
+     * petit (l'anneau est plafonné au quart du pool) ou bm_scanring = 0 : GetPage(pid, null) utilise
+     * alors le pool partagé.
+     */
+    public ScanRing NewScanRing() {
+        return NewScanRing(cfg.getBm_scanring());
+    }
+
+    public ScanRing NewScanRing(int size) {
+        int n = Math.min(size, active / 4);
+        return n < 1 ? null : new ScanRing(this, n);
+    }
+
+    public void FreePage(PageId pageId, boolean valdirty) {
+        FreePage(pageId.toLong(), valdirty);
     }
 
-    public synchronized void FreePage(PageId pageId, boolean valdirty) {
-        Integer idx = pageTable.get(pageId);
-        if (idx == null) return; // page pas en cache
+    /** FreePage par identifiant PageId.pack(fileIdx, pageIdx) (cf. GetPage(long)) */
+    public void FreePage(long pageKey, boolean valdirty) {
+        int idx = pageTable.get(pageKey);
+        if (idx < 0) return; // page pas en cache
         Frame f = frames[idx];
-        if (valdirty) f.dirty = true;
-        if (f.pinCount > 0) f.pinCount--;
+        if (f.key != pageKey) return;
+        if (valdirty) f.dirty = true; // avant le dépin : la frame ne peut pas être éjectée entre les deux
+        unpin(f);
         f.lastTouch = System.nanoTime();
         // pas d'appel DiskManager ici
     }
 
-    public synchronized void SetCurrentReplacementPolicy(String policy) {
-        this.policy = parsePolicy(policy);
+    /**
+     * Retire une page du pool sans l'écrire (page sur le point d'être désallouée) : une frame sale
+     * écrite plus tard la marquerait de nouveau utilisée sur disque. La page ne doit pas être épinglée.
+     */
+    public void DiscardPage(PageId pageId) {
+        long key = pageId.toLong();
+        while (true) {
+            int idx = pageTable.get(key);
+            if (idx < 0) return;
+            Frame f = frames[idx];
+            int c = f.pinCount;
+            if (c > 0) throw new IllegalStateException("Page épinglée : " + pageId);
+            if (c < 0) {
+                waitReleased(f);
+                continue;
+            }
+            if (!PIN.compareAndSet(f, 0, -1)) continue;
+            if (f.key == key) {
+                pageTable.remove(key, idx);
+                reset(f);
+            }
+            f.pinCount = 0;
+            queueFree(f);
+            return;
+        }
     }
 
-    public synchronized void FlushBuffers() throws IOException {
+    /**
+     * Change de politique à chaud : la nouvelle politique reçoit les pages présentes dans l'ordre
+     * de leur dernier accès.
+     */
+    public void SetCurrentReplacementPolicy(String policy) {
+        synchronized (replacementLock) {
+            installPolicy(ReplacementPolicy.create(policy, frames.length), null);
+        }
+    }
+
+    // Sous replacementLock : remplace la politique (et le tableau des frames si grown != null), puis
+    // lui confie les pages présentes dans l'ordre de leur dernier accès
+    private void installPolicy(ReplacementPolicy next, Frame[] grown) {
+        // publier avant de relire les frames : une page chargée en même temps est vue ici ou
+        // enregistrée par publish dans la nouvelle politique (les deux écritures sont volatiles)
+        replacer = next;
+        if (grown != null) frames = grown;
+        List<Frame> loaded = new ArrayList<>();
+        for (Frame f : frames) {
+            if (f.pageId != null && f.ring == null) loaded.add(f);
+        }
+        loaded.sort(Comparator.comparingLong(f -> f.lastTouch));
+        for (Frame f : loaded) {
+            PageId pid = f.pageId;
+            if (pid != null) next.onLoad(f.index, pid);
+        }
+    }
+
+    /**
+     * Écrit les pages dirty puis vide le pool (les frames encore épinglées par un autre thread
+     * restent en place). Avec dm_durability=FLUSH, les écritures sont ensuite rendues durables par
+     * DiskManager.Sync (un force par fichier touché, partagé entre appelants). Pour écrire sans
+     * perdre le cache, utiliser Checkpoint.
+     */
+    public void FlushBuffers() throws IOException {
+        writeDirtyFrames();
         for (int i = 0; i < frames.length; i++) {
             Frame f = frames[i];
-            if (f.pageId != null) {
-                if (f.dirty) {
-                    dm.WritePage(f.pageId, f.data);
-                }
-                // reset
-                f.pageId = null;
+            if (f.pageId == null || !PIN.compareAndSet(f, 0, -1)) continue;
+            try {
+                evictClaimed(i); // page redevenue dirty entre-temps : réécrite ici
+            } finally {
                 f.pinCount = 0;
-                f.dirty = false;
-                f.lastTouch = 0;
-                Arrays.fill(f.data, (byte)0);
+                queueFree(f);
             }
         }
-        pageTable.clear();
+        syncIfDurable();
     }
 
-    private int findFreeFrame() {
-        for (int i = 0; i < frames.length; i++) {
-            if (frames[i].pageId == null && frames[i].pinCount == 0) return i;
+    /**
+     * Comme FlushBuffers, limité aux pages indiquées : chacune est écrite si dirty puis retirée du
+     * pool (sauf si un autre thread l'épingle) ; les autres pages restent en cache.
+     */
+    public void FlushPages(List<PageId> pageIds) throws IOException {
+        for (PageId pid : pageIds) {
+            long key = pid.toLong();
+            while (true) {
+                int idx = pageTable.get(key);
+                if (idx < 0) break;
+                Frame f = frames[idx];
+                int c = f.pinCount;
+                if (c > 0) break; // épinglée : laissée en place, comme dans FlushBuffers
+                if (c < 0) {
+                    waitReleased(f);
+                    continue;
+                }
+                if (!PIN.compareAndSet(f, 0, -1)) continue;
+                try {
+                    if (f.key == key) evictClaimed(idx);
+                } finally {
+                    f.pinCount = 0;
+                    queueFree(f);
+                }
+                break;
+            }
+        }
+        syncIfDurable();
+    }
+
+    /**
+     * Point de contrôle : écrit les pages dirty par lots triés par (fileIdx,pageIdx), chaque suite
+     * de pages contiguës en une seule écriture (DiskManager.WritePages), puis DiskManager.Sync avec
+     * dm_durability=FLUSH. Les pages restent en cache, propres ; un lot n'épingle que quelques
+     * frames à la fois. Retourne le nombre de pages écrites.
+     */
+    public int Checkpoint() throws IOException {
+        long[] keys = dirtyPageKeys();
+        int written = 0;
+        for (int from = 0; from < keys.length; from += CHECKPOINT_BATCH) {
+            written += checkpointPages(keys, from, Math.min(keys.length, from + CHECKPOINT_BATCH));
+        }
+        checkpointDone();
+        return written;
+    }
+
+    // Pages dirty du pool, triées : l'ordre de PageId.pack est celui de (fileIdx,pageIdx)
+    long[] dirtyPageKeys() {
+        Frame[] fs = frames;
+        long[] keys = new long[fs.length];
+        int n = 0;
+        for (Frame f : fs) {
+            long key = f.key;
+            if (f.dirty && key != NO_PAGE) keys[n++] = key;
+        }
+        keys = Arrays.copyOf(keys, n);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Écrit celles des pages keys[from..to) encore dirty dans le pool (une page éjectée entre-temps
+     * a été écrite par l'éjection) ; retourne le nombre de pages écrites.
+     */
+    int checkpointPages(long[] keys, int from, int to) throws IOException {
+        List<Frame> batch = new ArrayList<>(to - from);
+        for (int k = from; k < to; k++) {
+            int idx = pageTable.get(keys[k]);
+            if (idx < 0) continue;
+            Frame f = frames[idx];
+            // frame réservée : en cours d'éjection, donc réécrite par celle-ci
+            if (!f.dirty || !pin(f)) continue;
+            if (f.key == keys[k] && f.dirty && f.loaded == null) batch.add(f);
+            else unpin(f);
+        }
+        writePinned(batch);
+        stats.checkpointWrites.add(batch.size());
+        return batch.size();
+    }
+
+    // Fin d'un point de contrôle (Checkpoint ou Checkpointer)
+    void checkpointDone() throws IOException {
+        syncIfDurable();
+        stats.checkpoints.increment();
+    }
+
+    private void syncIfDurable() throws IOException {
+        if ("FLUSH".equals(cfg.getDm_durability())) dm.Sync();
+    }
+
+    /**
+     * Arrête le BackgroundWriter et le Checkpointer (s'il y en a) ; les pages dirty restent dans le
+     * pool, à écrire par FlushBuffers. À appeler avant DiskManager.Finish.
+     */
+    public void Close() {
+        if (writer != null) writer.stop();
+        if (checkpointer != null) checkpointer.stop();
+    }
+
+    /**
+     * Un passage d'écriture de fond : écrit au plus max frames dirty non épinglées parmi les
+     * prochaines victimes de la politique (ReplacementPolicy.upcoming). Tant que la part de frames
+     * dirty ne dépasse pas dirtyRatio %, seules les max prochaines victimes sont regardées ; au-delà,
+     * les max prochaines victimes dirty sont écrites. Retourne le nombre de pages écrites.
+     */
+    int cleanAhead(int max, int dirtyRatio) throws IOException {
+        int dirtyCount = 0;
+        for (Frame f : frames) {
+            if (f.dirty) dirtyCount++;
+        }
+        if (dirtyCount == 0 || max <= 0) return 0;
+        boolean over = dirtyCount * 100L > (long) dirtyRatio * active;
+        int[] next = new int[Math.min(max, frames.length)];
+        int n = replacer.upcoming(next, i -> {
+            Frame f = frames[i];
+            return f.pinCount == 0 && f.pageId != null && f.loaded == null && f.ring == null && (!over || f.dirty);
+        });
+        List<Frame> batch = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            Frame f = frames[next[k]];
+            // frame en cours d'utilisation : laissée à son propriétaire
+            if (!f.dirty || !PIN.compareAndSet(f, 0, 1)) continue;
+            if (f.pageId != null && f.dirty && f.loaded == null) batch.add(f);
+            else unpin(f);
+        }
+        writePinned(batch);
+        stats.backgroundWrites.add(batch.size());
+        return batch.size();
+    }
+
+    private void writeDirtyFrames() throws IOException {
+        List<Frame> dirty = new ArrayList<>();
+        for (Frame f : frames) {
+            if (!f.dirty || !pin(f)) continue;
+            if (f.pageId != null && f.dirty && f.loaded == null) dirty.add(f);
+            else unpin(f);
+        }
+        writePinned(dirty);
+    }
+
+    /**
+     * Écrit des frames dirty épinglées par l'appelant, triées par (fileIdx,pageIdx) et regroupées
+     * en suites de pages contiguës : chaque suite est copiée dans un buffer direct propre au thread
+     * (WRITE_BUFFER octets, alloué une fois) et part en une écriture vectorielle par remplissage
+     * (DiskManager.WritePages), sans allocation par suite. dirty est remis à false avant d'écrire, donc une modification
+     * concurrente (FreePage(.., true) après coup) la laisse dirty. Les frames sont dépinglées à la fin.
+     */
+    private void writePinned(List<Frame> dirty) throws IOException {
+        List<PageId> ids = new ArrayList<>(dirty.size());
+        for (Frame f : dirty) ids.add(f.pageId);
+        Integer[] order = new Integer[dirty.size()];
+        for (int k = 0; k < order.length; k++) order[k] = k;
+        Arrays.sort(order, Comparator.comparingInt((Integer k) -> ids.get(k).getFileIdx()).thenComparingInt(k -> ids.get(k).getPageIdx()));
+        try {
+            int start = 0;
+            while (start < order.length) {
+                int end = start + 1;
+                while (end < order.length
+                        && ids.get(order[end]).getFileIdx() == ids.get(order[start]).getFileIdx()
+                        && ids.get(order[end]).getPageIdx() == ids.get(order[end - 1]).getPageIdx() + 1) {
+                    end++;
+                }
+                // le latch d'éjection de chaque frame est tenu de la copie à la fin de l'écriture (pris
+                // dans l'ordre des pages) : deux écritures concurrentes d'une même page (FlushBuffers
+                // de deux threads, écrivain de fond) ne peuvent pas arriver sur disque dans le
+                // désordre, la version la plus ancienne en dernier
+                for (int k = start; k < end; k++) dirty.get(order[k]).latch.lock();
+                try {
+                    // copie de chaque page sous son latch partagé (un seul latch de contenu tenu à la
+                    // fois) dans le buffer d'écriture du thread, puis une écriture par remplissage
+                    ByteBuffer run = writeBuffer();
+                    int per = run.capacity() / cfg.getPagesize();
+                    for (int from = start; from < end; from += per) {
+                        int to = Math.min(end, from + per);
+                        for (int k = from; k < to; k++) {
+                            Frame f = dirty.get(order[k]);
+                            f.contentLatch.readLock().lock();
+                            try {
+                                f.dirty = false;
+                                run.put((k - from) * cfg.getPagesize(), f.buffer, 0, cfg.getPagesize());
+                            } finally {
+                                f.contentLatch.readLock().unlock();
+                            }
+                        }
+                        try {
+                            dm.WritePages(ids.get(order[from]), splitPages(run, to - from));
+                            stats.writes.add(to - from);
+                        } catch (IOException | RuntimeException e) {
+                            for (int k = from; k < end; k++) dirty.get(order[k]).dirty = true;
+                            throw e;
+                        }
+                    }
+                } finally {
+                    for (int k = start; k < end; k++) dirty.get(order[k]).latch.unlock();
+                }
+                start = end;
+            }
+        } finally {
+            for (Frame f : dirty) unpin(f);
+        }
+    }
+
+    // Buffer direct du thread pour writePinned, réutilisé d'une écriture à l'autre (au moins une page)
+    private ByteBuffer writeBuffer() {
+        ByteBuffer b = writeBuffer.get();
+        if (b == null) {
+            int pages = Math.max(1, WRITE_BUFFER / cfg.getPagesize());
+            b = ByteBuffer.allocateDirect(pages * cfg.getPagesize());
+            writeBuffer.set(b);
+        }
+        return b;
+    }
+
+    private ByteBuffer[] splitPages(ByteBuffer run, int n) {
+        ByteBuffer[] pages = new ByteBuffer[n];
+        for (int k = 0; k < n; k++) pages[k] = run.slice(k * cfg.getPagesize(), cfg.getPagesize());
+        return pages;
+    }
+
+    // Épingle la frame de la page si elle est dans la table ; null si la page n'est pas en cache
+    private Frame pinCached(long key) {
+        while (true) {
+            int idx = pageTable.get(key);
+            if (idx < 0) return null;
+            Frame f = frames[idx];
+            if (!pin(f)) {
+                stats.pinWaits.increment();
+                waitReleased(f); // frame en cours d'éjection : attendre la fin de la réécriture
+                continue;
+            }
+            if (f.key == key) return f;
+            unpinFree(f); // frame recyclée entre la lecture de la table et le pin
+        }
+    }
+
+    private static boolean pin(Frame f) {
+        while (true) {
+            int c = f.pinCount;
+            if (c < 0) return false;
+            if (PIN.compareAndSet(f, c, c + 1)) return true;
+        }
+    }
+
+    private static void unpin(Frame f) {
+        while (true) {
+            int c = f.pinCount;
+            if (c <= 0) return;
+            if (PIN.compareAndSet(f, c, c - 1)) return;
+        }
+    }
+
+    // Dépin d'une frame dont la lecture a pu échouer : rendue vide et libre, elle retourne dans freeFrames
+    private void unpinFree(Frame f) {
+        unpin(f);
+        if (f.pageId == null && f.pinCount == 0) queueFree(f);
+    }
+
+    // Met une frame vide dans freeFrames (une seule fois) ; une frame d'anneau reste à son anneau
+    private void queueFree(Frame f) {
+        synchronized (replacementLock) {
+            if (f.queued || f.pageId != null || f.ring != null) return;
+            f.queued = true;
+            freeFrames.add(f.index);
+        }
+    }
+
+    private void touch(Frame f) {
+        f.lastTouch = System.nanoTime();
+        if (f.ring == null) replacer.onAccess(f.index);
+    }
+
+    // Seqlock des lectures optimistes : version impaire de beginChange à endChange. Les écrivains
+    // d'une même frame sont déjà exclus entre eux (réservation, chargement, latch exclusif).
+    private static void beginChange(Frame f) {
+        f.version = f.version + 1;
+        VarHandle.storeStoreFence(); // la version impaire est visible avant les écritures qui suivent
+    }
+
+    private static void endChange(Frame f) {
+        f.version = f.version + 1; // écriture volatile : publie les écritures qui précèdent
+    }
+
+    private static void waitReleased(Frame f) {
+        f.latch.lock();
+        f.latch.unlock();
+        Thread.yield(); // la frame peut être réservée sans que le latch soit encore pris
+    }
+
+    private void awaitLoaded(Frame f) throws IOException {
+        CompletableFuture<Void> l = f.loaded;
+        if (l == null) return;
+        if (!l.isDone()) stats.pinWaits.increment();
+        try {
+            l.join();
+        } catch (CompletionException e) {
+            // le thread qui chargeait a échoué : l'appelant voit pageId != page demandée
+        }
+    }
+
+    /**
+     * Rend visible dans la table la frame réservée idx (pinCount = -1) pour pageId, épinglée une fois
+     * par l'appelant et marquée en chargement. false si un autre thread a publié la page avant :
+     * la frame est alors rendue libre.
+     */
+    private boolean publish(PageId pageId, int idx) {
+        Frame f = frames[idx];
+        long key = pageId.toLong();
+        beginChange(f); // jusqu'à finishLoad/abortLoad
+        f.pageId = pageId;
+        f.key = key;
+        f.dirty = false;
+        f.loaded = new CompletableFuture<>();
+        f.pinCount = 1;
+        if (pageTable.putIfAbsent(key, idx) < 0) {
+            if (f.ring == null) replacer.onLoad(idx, pageId);
+            return true;
+        }
+        f.loaded = null;
+        f.key = NO_PAGE;
+        f.pageId = null;
+        endChange(f);
+        unpinFree(f);
+        return false;
+    }
+
+    private void finishLoad(Frame f) {
+        CompletableFuture<Void> l = f.loaded;
+        f.loaded = null;
+        endChange(f);
+        if (l != null) l.complete(null);
+    }
+
+    // Lecture échouée : la page sort de la table, les threads en attente réessaieront (le pin du
+    // thread qui chargeait reste à rendre par lui)
+    private void abortLoad(int idx, Throwable e) {
+        Frame f = frames[idx];
+        if (f.pageId != null) pageTable.remove(f.key, idx);
+        f.key = NO_PAGE;
+        f.pageId = null;
+        replacer.onRemove(idx);
+        CompletableFuture<Void> l = f.loaded;
+        f.loaded = null;
+        endChange(f);
+        if (l != null) l.completeExceptionally(e);
+    }
+
+    /**
+     * Réserve une frame (pinCount passe à -1) : d'abord une frame libre de freeFrames, sinon une
+     * victime choisie selon la politique puis réécrite si dirty (hors replacementLock).
+     */
+    private int claimFrame() throws IOException {
+        int idx;
+        synchronized (replacementLock) {
+            idx = claimFreeFrame();
+            if (idx >= 0) return idx;
+            idx = claimVictim();
+            if (idx == -1) throw new IOException("Aucune frame éjectable (toutes pinCount>0)");
+        }
+        try {
+            evictVictim(idx);
+        } catch (IOException | RuntimeException e) {
+            frames[idx].pinCount = 0;
+            throw e;
+        }
+        return idx;
+    }
+
+    // Sous replacementLock, O(1) hors entrées à sauter : une entrée périmée (frame rechargée ou prise
+    // par un anneau) est abandonnée, une frame vide épinglée un instant (pinCached) remise en fin de file
+    private int claimFreeFrame() {
+        for (int n = freeFrames.size(); n > 0; n--) {
+            int i = freeFrames.poll();
+            Frame f = frames[i];
+            if (f.pageId != null || f.ring != null) {
+                f.queued = false;
+                continue;
+            }
+            if (PIN.compareAndSet(f, 0, -1)) {
+                f.queued = false;
+                return i;
+            }
+            freeFrames.add(i);
         }
         return -1;
     }
 
+    private int claimVictim() {
+        while (true) {
+            int victim = selectVictim();
+            if (victim == -1) return -1;
+            if (PIN.compareAndSet(frames[victim], 0, -1)) return victim;
+            // épinglée entre la sélection et la réservation : recommencer
+        }
+    }
+
+    // Coût propre à la politique (O(1) amorti pour LRU, CLOCK et 2Q hors frames épinglées sautées)
     private int selectVictim() {
-        int victim = -1;
-        long best = (policy == Policy.LRU) ? Long.MAX_VALUE : Long.MIN_VALUE;
-        for (int i = 0; i < frames.length; i++) {
+        return replacer.victim(i -> {
             Frame f = frames[i];
-            if (f.pinCount > 0 || f.pageId == null) continue; // cannot evict pinned or empty
-            if (policy == Policy.LRU) {
-                if (f.lastTouch < best) { best = f.lastTouch; victim = i; }
-            } else { // MRU
-                if (f.lastTouch > best) { best = f.lastTouch; victim = i; }
+            return f.pinCount == 0 && f.pageId != null && f.loaded == null && f.ring == null;
+        });
+    }
+
+    /**
+     * Réserve la frame dont c'est le tour dans l'anneau : elle est éjectée (réécrite si dirty) et
+     * réutilisée. Si elle est encore épinglée, elle est rendue au pool partagé et remplacée par une
+     * frame prise par claimFrame ; de même tant que l'anneau n'est pas plein.
+     */
+    private int claimRingFrame(ScanRing ring) throws IOException {
+        int slot = ring.advance();
+        int idx = ring.frames[slot];
+        if (idx >= 0) {
+            Frame f = frames[idx];
+            if (PIN.compareAndSet(f, 0, -1)) {
+                try {
+                    evictVictim(idx);
+                } catch (IOException | RuntimeException e) {
+                    f.pinCount = 0;
+                    throw e;
+                }
+                return idx;
+            }
+            ring.frames[slot] = -1;
+            releaseFrame(f);
+        }
+        idx = claimFrame();
+        frames[idx].ring = ring;
+        ring.frames[slot] = idx;
+        return idx;
+    }
+
+    // Fin d'un parcours : les pages propres de l'anneau sont retirées (frames libres), les autres
+    // sont confiées à la politique de remplacement
+    void releaseRing(ScanRing ring) {
+        for (int k = 0; k < ring.frames.length; k++) {
+            int idx = ring.frames[k];
+            if (idx < 0) continue;
+            ring.frames[k] = -1;
+            Frame f = frames[idx];
+            if (PIN.compareAndSet(f, 0, -1)) {
+                PageId pid = f.pageId;
+                if (pid != null && !f.dirty) {
+                    pageTable.remove(f.key, idx);
+                    reset(f);
+                }
+                f.pinCount = 0;
             }
+            releaseFrame(f);
         }
-        return victim;
     }
 
-    private void evict(int idx) throws IOException {
+    // Rend une frame de l'anneau au pool partagé
+    private void releaseFrame(Frame f) {
+        synchronized (replacementLock) {
+            f.ring = null;
+            if (!pin(f)) return; // réservée : la page est en train de sortir du pool
+            PageId pid = f.pageId;
+            if (pid != null) replacer.onLoad(f.index, pid);
+            unpin(f);
+            if (pid == null) queueFree(f);
+        }
+    }
+
+    // Éjection sur le chemin d'un défaut de cache (victime ou frame recyclée de l'anneau), comptée
+    private void evictVictim(int idx) throws IOException {
+        Frame f = frames[idx];
+        if (f.pageId == null) return;
+        boolean wasDirty = f.dirty; // frame réservée : personne ne peut la marquer dirty entre-temps
+        evictClaimed(idx);
+        stats.evictions.increment();
+        if (wasDirty) stats.dirtyEvictions.increment();
+    }
+
+    // Éjecte la page d'une frame réservée par l'appelant : réécriture si dirty puis retrait de la table
+    private void evictClaimed(int idx) throws IOException {
         Frame f = frames[idx];
-        if (f.dirty && f.pageId != null) {
-            dm.WritePage(f.pageId, f.data);
+        f.latch.lock();
+        try {
+            PageId pid = f.pageId;
+            if (pid == null) return;
+            if (f.dirty) {
+                f.dirty = false;
+                try {
+                    dm.WritePage(pid, f.buffer);
+                    stats.writes.increment();
+                } catch (IOException | RuntimeException e) {
+                    f.dirty = true;
+                    throw e;
+                }
+            }
+            pageTable.remove(f.key, idx);
+            reset(f);
+        } finally {
+            f.latch.unlock();
         }
-        if (f.pageId != null) pageTable.remove(f.pageId);
+    }
+
+    private void reset(Frame f) {
+        beginChange(f);
+        replacer.onRemove(f.index);
+        f.key = NO_PAGE;
         f.pageId = null;
-        f.pinCount = 0;
         f.dirty = false;
+        f.prefetched = false;
         f.lastTouch = 0;
-        Arrays.fill(f.data, (byte)0);
+        f.buffer.put(0, zeroPage);
+        endChange(f);
     }
 
     // Helpers for tests/inspection
-    public synchronized int getBufferCount() { return frames.length; }
-    public synchronized Frame getFrame(int i) { return frames[i]; }
-    public synchronized String getPolicy() { return policy.name(); }
+    /** Nombre de frames utilisables ; getFrame(i) couvre aussi les frames retirées (cf. getFrameSlots) */
+    public int getBufferCount() { return active; }
+    public int getFrameSlots() { return frames.length; }
+    public Frame getFrame(int i) { return frames[i]; }
+    public String getPolicy() { return replacer.name(); }
+    public boolean isOffHeap() { return offHeap; }
+    public long getBackgroundWrites() { return stats.getBackgroundWrites(); }
+
+    /** Compteurs du pool (cf. BufferStats) */
+    public BufferStats getStats() { return stats; }
 }
@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pools de buffers nommés partageant un même DiskManager : le pool « default » (bm_buffercount ou
+ * bm_memorybudget, bm_policy) et ceux déclarés par bm_pools, chacun avec sa taille et sa politique.
+ *
+ *   bm_pools=hot:64:LRU,scan:16M:MRU
+ *
+ * La taille d'un pool est un nombre de frames, ou un budget mémoire avec suffixe K/M/G ou en %
+ * (cf. bm_memorybudget) ; la politique est optionnelle (bm_policy par défaut). Les autres paramètres
+ * bm_* (hors tas, anneau, écrivain de fond, lecture anticipée) s'appliquent à tous les pools.
+ *
+ * Une relation est liée à un pool par DBManager.bindTable : ses pages ne sont chargées que dans ce
+ * pool, donc les parcours des grosses tables du pool default ne peuvent pas éjecter les petites
+ * tables d'un pool dédié. Une page ne doit être accédée que par un seul pool.
+ */
+public class BufferPools {
+    public static final String DEFAULT = "default";
+
+    /** Déclaration d'un pool dans bm_pools */
+    static final class Spec {
+        final String name;
+        final String size;   // nombre de frames ou budget mémoire
+        final String policy; // null : bm_policy
+
+        Spec(String name, String size, String policy) {
+            this.name = name;
+            this.size = size;
+            this.policy = policy;
+        }
+    }
+
+    private final Map<String, BufferManager> pools = new LinkedHashMap<>();
+
+    public BufferPools(DBConfig cfg, DiskManager dm) {
+        pools.put(DEFAULT, new BufferManager(cfg, dm));
+        List<Spec> specs = parse(cfg.getBm_pools());
+        if (specs == null) throw new IllegalArgumentException("bm_pools invalide : " + cfg.getBm_pools());
+        for (Spec s : specs) {
+            int frames = frameCount(s.size, cfg);
+            String policy = s.policy == null ? cfg.getBm_policy() : s.policy;
+            pools.put(s.name, new BufferManager(cfg.forPool(frames, policy), dm));
+        }
+    }
+
+    /**
+     * Analyse bm_pools : liste de nom:taille[:politique] séparés par des virgules ; null si la
+     * liste est invalide (nom répété ou réservé, taille ou politique inconnue). "" : aucun pool nommé.
+     */
+    static List<Spec> parse(String spec) {
+        List<Spec> specs = new ArrayList<>();
+        if (spec == null || spec.trim().isEmpty()) return specs;
+        List<String> names = new ArrayList<>();
+        names.add(DEFAULT);
+        for (String item : spec.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length < 2 || parts.length > 3) return null;
+            String name = parts[0].trim().toLowerCase();
+            String size = parts[1].trim().toUpperCase();
+            String policy = parts.length == 3 ? parts[2].trim().toUpperCase() : null;
+            if (!name.matches("[a-z0-9_]+") || names.contains(name)) return null;
+            if (!size.matches("[0-9]+") && DBConfig.parseMemoryBudget(size, 1L << 30) < 0) return null;
+            if (policy != null && !policy.matches("LRU|MRU|CLOCK|2Q|TWOQ")) return null;
+            names.add(name);
+            specs.add(new Spec(name, size, policy));
+        }
+        return specs;
+    }
+
+    // Nombre de frames d'un pool : entier = frames, sinon budget mémoire
+    private static int frameCount(String size, DBConfig cfg) {
+        if (size.matches("[0-9]+")) return Math.max(1, Integer.parseInt(size));
+        DBConfig budget = cfg.forPool(1, cfg.getBm_policy());
+        budget.setBm_memorybudget(size);
+        return BufferManager.frameCount(budget);
+    }
+
+    /** Pool nommé, ou null s'il n'existe pas */
+    public BufferManager get(String name) {
+        return pools.get(name == null ? DEFAULT : name.toLowerCase());
+    }
+
+    public BufferManager getDefault() {
+        return pools.get(DEFAULT);
+    }
+
+    public boolean contains(String name) {
+        return name != null && pools.containsKey(name.toLowerCase());
+    }
+
+    /** Noms des pools, default en premier */
+    public List<String> names() {
+        return new ArrayList<>(pools.keySet());
+    }
+
+    /** FlushBuffers de chaque pool */
+    public void FlushBuffers() throws IOException {
+        for (BufferManager bm : pools.values()) bm.FlushBuffers();
+    }
+
+    /** Checkpoint de chaque pool ; retourne le nombre total de pages écrites */
+    public int Checkpoint() throws IOException {
+        int written = 0;
+        for (BufferManager bm : pools.values()) written += bm.Checkpoint();
+        return written;
+    }
+
+    /** Close de chaque pool (à appeler avant DiskManager.Finish) */
+    public void Close() {
+        for (BufferManager bm : pools.values()) bm.Close();
+    }
+}
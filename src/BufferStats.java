@@ -0,0 +1,157 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs du pool de buffers (BufferManager.getStats) : assez peu coûteux pour rester actifs en
+ * production (LongAdder, répartis par cellule entre les threads, sans point de contention).
+ *
+ * - hits / misses : accès trouvés en cache (lectures optimistes comprises) ou lus sur disque, avec
+ *   le temps cumulé des lectures ;
+ * - evictions : pages sorties du pool pour libérer une frame, dont dirtyEvictions réécrites sur le
+ *   chemin d'un défaut de cache ;
+ * - writes : pages écrites sur disque (éjection, FlushBuffers, écrivain de fond, point de contrôle) ;
+ * - checkpoints : points de contrôle terminés (Checkpoint, Checkpointer), checkpointWrites : pages
+ *   qu'ils ont écrites ;
+ * - pinWaits : attentes d'une frame en cours d'éjection ou de chargement par un autre thread ;
+ *   latchWaits : attentes d'un latch de contenu (PageHandle) tenu par un autre thread ;
+ * - prefetches : lectures anticipées lancées ;
+ * - optimisticRetries : lectures optimistes refaites (frame modifiée pendant la lecture), dont
+ *   optimisticFallbacks terminées par GetPageShared (page absente ou trop souvent modifiée).
+ *
+ * Les accès faits par une Relation sont aussi comptés dans ses compteurs (relation(nom)).
+ * Les valeurs sont lues sans instantané global : chaque compteur est exact, pas leur ensemble.
+ */
+public final class BufferStats {
+    /** Compteurs d'accès (global ou d'une relation) */
+    public static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder missNanos = new LongAdder();
+
+        void hit() { hits.increment(); }
+
+        void miss(long nanos) {
+            misses.increment();
+            missNanos.add(nanos);
+        }
+
+        public long getHits() { return hits.sum(); }
+        public long getMisses() { return misses.sum(); }
+
+        /** Part des accès servis par le cache, entre 0 et 1 (0 sans accès) */
+        public double getHitRatio() {
+            long h = hits.sum();
+            long total = h + misses.sum();
+            return total == 0 ? 0.0 : (double) h / total;
+        }
+
+        /** Durée moyenne d'un défaut de cache en microsecondes (lecture disque comprise) */
+        public double getAverageMissMicros() {
+            long m = misses.sum();
+            return m == 0 ? 0.0 : missNanos.sum() / 1000.0 / m;
+        }
+
+        void reset() {
+            hits.reset();
+            misses.reset();
+            missNanos.reset();
+        }
+    }
+
+    private final Counters total = new Counters();
+    private final Map<String, Counters> relations = new ConcurrentHashMap<>();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder dirtyEvictions = new LongAdder();
+    final LongAdder writes = new LongAdder();
+    final LongAdder backgroundWrites = new LongAdder();
+    final LongAdder checkpoints = new LongAdder();
+    final LongAdder checkpointWrites = new LongAdder();
+    final LongAdder pinWaits = new LongAdder();
+    final LongAdder latchWaits = new LongAdder();
+    final LongAdder prefetches = new LongAdder();
+    final LongAdder optimisticRetries = new LongAdder();
+    final LongAdder optimisticFallbacks = new LongAdder();
+
+    BufferStats() {}
+
+    /** Compteurs de la relation name (créés au premier appel) ; à conserver par l'appelant */
+    public Counters relation(String name) {
+        return relations.computeIfAbsent(name, k -> new Counters());
+    }
+
+    // Accès servi par le cache ; rel == null : accès hors relation
+    void hit(Counters rel) {
+        total.hit();
+        if (rel != null) rel.hit();
+    }
+
+    void miss(Counters rel, long nanos) {
+        total.miss(nanos);
+        if (rel != null) rel.miss(nanos);
+    }
+
+    public Counters getTotal() { return total; }
+    public long getHits() { return total.getHits(); }
+    public long getMisses() { return total.getMisses(); }
+    public double getHitRatio() { return total.getHitRatio(); }
+    public double getAverageMissMicros() { return total.getAverageMissMicros(); }
+    public long getEvictions() { return evictions.sum(); }
+    public long getDirtyEvictions() { return dirtyEvictions.sum(); }
+    public long getWrites() { return writes.sum(); }
+    public long getBackgroundWrites() { return backgroundWrites.sum(); }
+    public long getCheckpoints() { return checkpoints.sum(); }
+    public long getCheckpointWrites() { return checkpointWrites.sum(); }
+    public long getPinWaits() { return pinWaits.sum(); }
+    public long getLatchWaits() { return latchWaits.sum(); }
+    public long getPrefetches() { return prefetches.sum(); }
+    public long getOptimisticRetries() { return optimisticRetries.sum(); }
+    public long getOptimisticFallbacks() { return optimisticFallbacks.sum(); }
+
+    /** Noms des relations ayant des compteurs, triés */
+    public List<String> getRelationNames() {
+        List<String> names = new ArrayList<>(relations.keySet());
+        names.sort(null);
+        return names;
+    }
+
+    /** Remet tous les compteurs à zéro (les relations déjà vues restent enregistrées) */
+    public void reset() {
+        total.reset();
+        for (Counters c : relations.values()) c.reset();
+        evictions.reset();
+        dirtyEvictions.reset();
+        writes.reset();
+        backgroundWrites.reset();
+        checkpoints.reset();
+        checkpointWrites.reset();
+        pinWaits.reset();
+        latchWaits.reset();
+        prefetches.reset();
+        optimisticRetries.reset();
+        optimisticFallbacks.reset();
+    }
+
+    /** Rapport sur plusieurs lignes (commande STATS BUFFER de MiniSGBDR) */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Accès : %d hits, %d misses, taux de hit %.1f %%, défaut moyen %.1f µs%n",
+                getHits(), getMisses(), 100 * getHitRatio(), getAverageMissMicros()));
+        sb.append(String.format("Éjections : %d (dont %d dirty réécrites), pages écrites : %d (dont %d en fond)%n",
+                getEvictions(), getDirtyEvictions(), getWrites(), getBackgroundWrites()));
+        sb.append(String.format("Points de contrôle : %d (%d pages écrites)%n",
+                getCheckpoints(), getCheckpointWrites()));
+        sb.append(String.format("Attentes : %d pin, %d latch ; lectures anticipées : %d%n",
+                getPinWaits(), getLatchWaits(), getPrefetches()));
+        sb.append(String.format("Lectures optimistes : %d relances, %d par latch%n",
+                getOptimisticRetries(), getOptimisticFallbacks()));
+        for (String name : getRelationNames()) {
+            Counters c = relations.get(name);
+            sb.append(String.format("  %s : %d hits, %d misses, taux de hit %.1f %%%n",
+                    name, c.getHits(), c.getMisses(), 100 * c.getHitRatio()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PageStore par défaut (dm_iomode=CHANNEL) : FileChannel en accès positionnel (pread/pwrite),
+ * aucune position partagée n'est modifiée donc les appels concurrents sont sûrs.
+ * Les E/S vectorielles (scatter/gather) n'existent pas en positionnel dans FileChannel : elles
+ * positionnent le canal sous vectorLock, ce qui ne gêne pas les lectures/écritures positionnelles.
+ */
+class ChannelPageStore implements PageStore {
+    private final FileChannel ch;
+    private final Object vectorLock = new Object();
+
+    ChannelPageStore(Path p) throws IOException {
+        this.ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer dst) throws IOException {
+        long pos = offset;
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, pos);
+            if (n < 0) break;
+            pos += n;
+        }
+        // remplir le reste par zéro
+        while (dst.hasRemaining()) dst.put((byte) 0);
+    }
+
+    @Override
+    public void write(long offset, ByteBuffer src) throws IOException {
+        long pos = offset;
+        while (src.hasRemaining()) {
+            pos += ch.write(src, pos);
+        }
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer[] dsts) throws IOException {
+        synchronized (vectorLock) {
+            ch.position(offset);
+            while (dsts[dsts.length - 1].hasRemaining()) {
+                if (ch.read(dsts) < 0) break;
+            }
+        }
+        for (ByteBuffer dst : dsts) {
+            while (dst.hasRemaining()) dst.put((byte) 0);
+        }
+    }
+
+    @Override
+    public void write(long offset, ByteBuffer[] srcs) throws IOException {
+        synchronized (vectorLock) {
+            ch.position(offset);
+            while (srcs[srcs.length - 1].hasRemaining()) {
+                ch.write(srcs);
+            }
+        }
+    }
+
+    @Override
+    public long size() throws IOException { return ch.size(); }
+
+    @Override
+    public void truncate(long size) throws IOException { ch.truncate(size); }
+
+    @Override
+    public void force() throws IOException { ch.force(true); }
+
+    @Override
+    public boolean isOpen() { return ch.isOpen(); }
+
+    @Override
+    public void close() throws IOException { ch.close(); }
+}
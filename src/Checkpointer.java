@@ -0,0 +1,94 @@
+import java.io.IOException;
+
+/**
+ * Point de contrôle incrémental du BufferManager (bm_checkpointdelay > 0) : toutes les
+ * bm_checkpointdelay ms, les pages dirty à cet instant sont écrites dans l'ordre (fileIdx,pageIdx),
+ * par lots de pages contiguës regroupées (cf. BufferManager.checkpointPages), sans dépasser
+ * bm_checkpointrate pages par seconde. Les pages restent en cache ; une page modifiée pendant le
+ * point de contrôle est laissée au suivant.
+ *
+ * Comme le BackgroundWriter, le thread n'est jamais interrompu : stop() le réveille (y compris
+ * pendant la limitation de débit) et attend la fin du lot en cours.
+ */
+final class Checkpointer implements Runnable {
+    private static final int MAX_BATCH = 64; // pages par lot (une écriture par suite contiguë du lot)
+
+    private final BufferManager bm;
+    private final long delayMs;
+    private final int rate;
+    private final int batch;
+    private final Thread thread;
+    private boolean running = true; // protégé par this
+
+    Checkpointer(BufferManager bm, DBConfig cfg) {
+        this.bm = bm;
+        this.delayMs = cfg.getBm_checkpointdelay();
+        this.rate = cfg.getBm_checkpointrate();
+        // au moins dix lots par seconde sous limite de débit : les écritures restent étalées
+        this.batch = rate > 0 ? Math.max(1, Math.min(MAX_BATCH, rate / 10)) : MAX_BATCH;
+        this.thread = new Thread(this, "bm-checkpointer");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public void run() {
+        while (pause(delayMs)) {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                // les pages non écrites restent dirty : elles seront reprises au point de contrôle suivant
+                System.err.println("bm-checkpointer : " + e.getMessage());
+            }
+        }
+    }
+
+    // Un point de contrôle, lot par lot ; interrompu (sans Sync) par stop()
+    private void checkpoint() throws IOException {
+        long[] keys = bm.dirtyPageKeys();
+        long start = System.nanoTime();
+        long written = 0;
+        for (int from = 0; from < keys.length; from += batch) {
+            written += bm.checkpointPages(keys, from, Math.min(keys.length, from + batch));
+            if (rate > 0 && from + batch < keys.length) {
+                // le lot suivant ne part pas avant written / rate secondes depuis le début
+                long aheadMs = (written * 1000 / rate) - (System.nanoTime() - start) / 1_000_000;
+                if (aheadMs > 0 && !pause(aheadMs)) return;
+            }
+            synchronized (this) {
+                if (!running) return;
+            }
+        }
+        bm.checkpointDone();
+    }
+
+    // Attend ms millisecondes ; false si stop() a été appelé
+    private synchronized boolean pause(long ms) {
+        if (!running) return false;
+        try {
+            wait(ms);
+        } catch (InterruptedException e) {
+            return false;
+        }
+        return running;
+    }
+}
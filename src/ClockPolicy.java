@@ -0,0 +1,72 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+
+/**
+ * CLOCK (seconde chance) : un bit de référence par frame, mis à 1 à chaque accès sans verrou ;
+ * l'aiguille parcourt les frames, remet à 0 les bits à 1 et s'arrête sur la première frame
+ * éjectable dont le bit est à 0. Approximation de LRU sans aucune mise à jour de liste sur les
+ * accès en cache : c'est la politique la moins coûteuse quand beaucoup de threads lisent le pool.
+ */
+class ClockPolicy implements ReplacementPolicy {
+    private final AtomicIntegerArray ref;     // 1 = référencée depuis le dernier passage
+    private final AtomicIntegerArray present; // 1 = frame chargée
+    private volatile int hand = 0;            // modifié seulement dans victim (sous replacementLock)
+
+    ClockPolicy(int frames) {
+        this.ref = new AtomicIntegerArray(frames);
+        this.present = new AtomicIntegerArray(frames);
+    }
+
+    @Override
+    public void onLoad(int frame, PageId pageId) {
+        ref.set(frame, 1);
+        present.set(frame, 1);
+    }
+
+    @Override
+    public void onAccess(int frame) {
+        if (ref.get(frame) == 0) ref.lazySet(frame, 1);
+    }
+
+    @Override
+    public void onRemove(int frame) {
+        present.set(frame, 0);
+        ref.set(frame, 0);
+    }
+
+    @Override
+    public int victim(IntPredicate evictable) {
+        int n = ref.length();
+        // deux tours suffisent : le premier remet les bits à 0, le second trouve une frame
+        for (int step = 0; step < 2 * n; step++) {
+            int i = hand;
+            hand = (hand + 1) % n;
+            if (present.get(i) == 0 || !evictable.test(i)) continue;
+            if (ref.get(i) == 1) {
+                ref.set(i, 0);
+                continue;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // Depuis l'aiguille : d'abord les frames dont le bit est à 0 (choisies au premier tour), puis
+    // celles dont le bit est à 1 (choisies au second, si elles ne sont pas référencées d'ici là)
+    @Override
+    public int upcoming(int[] out, IntPredicate evictable) {
+        int n = ref.length();
+        int start = hand;
+        int count = 0;
+        for (int bit = 0; bit <= 1; bit++) {
+            for (int step = 0; step < n && count < out.length; step++) {
+                int i = (start + step) % n;
+                if (present.get(i) == 1 && ref.get(i) == bit && evictable.test(i)) out[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String name() { return "CLOCK"; }
+}
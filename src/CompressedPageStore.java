@@ -0,0 +1,386 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * PageStore en mode dm_compression=LZ : chaque page est compressée par PageCodec à l'écriture et
+ * décompressée à la lecture. Les pages compressées ont une taille variable, DataN.bin n'est donc
+ * plus indexé par pageIdx * pagesize : DataN.idx donne pour chaque page l'emplacement de sa version
+ * compressée.
+ *
+ * DataN.idx : en-tête (magic "PGZ1", pagesize) puis une entrée de 16 octets par page
+ *   offset (long) : position dans DataN.bin
+ *   len (int)     : taille compressée ; 0 = page entièrement nulle (rien dans DataN.bin),
+ *                   pagesize = page stockée non compressée
+ *   capacity (int): taille de l'emplacement réservé (len arrondi à SLOT_ALIGN)
+ * Une page réécrite reste en place si elle tient dans son emplacement, sinon elle est déplacée et
+ * l'ancien emplacement est réutilisé plus tard (les trous sont retrouvés à l'ouverture). Une page
+ * désallouée (discard) rend aussitôt son emplacement : c'est l'équivalent du hole punching.
+ *
+ * L'offset logique vu par le DiskManager reste pageIdx * pagesize et size() est la taille logique.
+ * Le contenu est écrit dans DataN.bin avant l'entrée de DataN.idx qui le référence, et l'ancien
+ * emplacement d'une page déplacée n'est rendu qu'une fois la nouvelle entrée écrite : aucun autre
+ * écrivain ne peut le réutiliser tant qu'une entrée (en mémoire ou dans DataN.idx) y renvoie.
+ *
+ * Concurrence : l'index est protégé par this, les E/S de données se font hors de ce verrou. Les
+ * accès à une même page sont ordonnés par un verrou lecture/écriture (réparti sur LOCK_STRIPES) :
+ * une lecture ne voit pas son emplacement déplacé et réutilisé pendant qu'elle le lit.
+ */
+class CompressedPageStore implements PageStore {
+    static final int IDX_MAGIC = 0x50475A31; // "PGZ1"
+    static final int IDX_HEADER = 8;
+    static final int ENTRY_SIZE = 16;
+    private static final int SLOT_ALIGN = 64;
+    private static final int LOCK_STRIPES = 64;
+
+    private final FileChannel data;
+    private final FileChannel idx;
+    private final int pagesize;
+
+    // index en mémoire (recopie de DataN.idx), protégé par this
+    private long[] offsets = new long[16];
+    private int[] lens = new int[16];
+    private int[] caps = new int[16];
+    private int pageCount;
+    private long dataEnd;                                                // fin du dernier emplacement utilisé
+    private final TreeMap<Integer, ArrayDeque<Long>> freeSlots = new TreeMap<>(); // capacité -> offsets libres
+    private final ReentrantReadWriteLock[] pageLocks = new ReentrantReadWriteLock[LOCK_STRIPES]; // par pageIdx % LOCK_STRIPES
+
+    CompressedPageStore(Path p, int pagesize) throws IOException {
+        this.pagesize = pagesize;
+        for (int i = 0; i < LOCK_STRIPES; i++) pageLocks[i] = new ReentrantReadWriteLock();
+        Path idxPath = indexPath(p);
+        boolean hasData = Files.exists(p) && Files.size(p) > 0;
+        if (hasData && !Files.exists(idxPath)) {
+            throw new IOException("Fichier " + p + " non compressé : dm_compression ne peut pas être activé sur une base existante");
+        }
+        this.data = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.idx = FileChannel.open(idxPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            loadIndex(idxPath);
+        } catch (IOException e) {
+            data.close();
+            idx.close();
+            throw e;
+        }
+    }
+
+    /** DataN.idx à côté de DataN.bin */
+    static Path indexPath(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dataFile.resolveSibling((dot >= 0 ? name.substring(0, dot) : name) + ".idx");
+    }
+
+    private void loadIndex(Path idxPath) throws IOException {
+        long size = idx.size();
+        if (size == 0) {
+            ByteBuffer h = ByteBuffer.allocate(IDX_HEADER);
+            h.putInt(IDX_MAGIC).putInt(pagesize).flip();
+            writeFully(idx, h, 0);
+            return;
+        }
+        ByteBuffer all = ByteBuffer.allocate((int) size);
+        readFully(idx, all, 0);
+        all.flip();
+        if (size < IDX_HEADER || all.getInt() != IDX_MAGIC || all.getInt() != pagesize) {
+            throw new IOException("Index " + idxPath + " invalide (magic ou pagesize)");
+        }
+        int n = (int) ((size - IDX_HEADER) / ENTRY_SIZE); // entrée incomplète (crash pendant l'ajout) ignorée
+        ensureCapacity(n);
+        TreeMap<Long, Integer> used = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            offsets[i] = all.getLong();
+            lens[i] = all.getInt();
+            caps[i] = all.getInt();
+            if (caps[i] > 0) used.put(offsets[i], caps[i]);
+        }
+        pageCount = n;
+        // les trous entre emplacements utilisés redeviennent des emplacements libres
+        long pos = 0;
+        for (Map.Entry<Long, Integer> e : used.entrySet()) {
+            if (e.getKey() > pos) addFreeSlot(pos, (int) (e.getKey() - pos));
+            pos = Math.max(pos, e.getKey() + e.getValue());
+        }
+        dataEnd = pos;
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer dst) throws IOException {
+        byte[] page = new byte[pagesize];
+        while (dst.hasRemaining()) {
+            int pageIdx = (int) (offset / pagesize);
+            int inPage = (int) (offset % pagesize);
+            int n = Math.min(dst.remaining(), pagesize - inPage);
+            readPage(pageIdx, page);
+            dst.put(page, inPage, n);
+            offset += n;
+        }
+    }
+
+    @Override
+    public void write(long offset, ByteBuffer src) throws IOException {
+        byte[] page = new byte[pagesize];
+        while (src.hasRemaining()) {
+            int pageIdx = (int) (offset / pagesize);
+            int inPage = (int) (offset % pagesize);
+            int n = Math.min(src.remaining(), pagesize - inPage);
+            if (n < pagesize) readPage(pageIdx, page); // écriture partielle : lecture-modification-écriture
+            src.get(page, inPage, n);
+            writePage(pageIdx, page);
+            offset += n;
+        }
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer[] dsts) throws IOException {
+        for (ByteBuffer dst : dsts) {
+            int n = dst.remaining();
+            read(offset, dst);
+            offset += n;
+        }
+    }
+
+    @Override
+    public void write(long offset, ByteBuffer[] srcs) throws IOException {
+        for (ByteBuffer src : srcs) {
+            int n = src.remaining();
+            write(offset, src);
+            offset += n;
+        }
+    }
+
+    private ReentrantReadWriteLock pageLock(int pageIdx) {
+        return pageLocks[pageIdx % LOCK_STRIPES];
+    }
+
+    private void readPage(int pageIdx, byte[] page) throws IOException {
+        ReentrantReadWriteLock.ReadLock lock = pageLock(pageIdx).readLock();
+        lock.lock();
+        try {
+            readPageLocked(pageIdx, page);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void readPageLocked(int pageIdx, byte[] page) throws IOException {
+        long off;
+        int len;
+        synchronized (this) {
+            if (pageIdx >= pageCount) {
+                java.util.Arrays.fill(page, (byte) 0); // au-delà de la fin : zéros, comme les autres PageStore
+                return;
+            }
+            off = offsets[pageIdx];
+            len = lens[pageIdx];
+        }
+        if (len == 0) {
+            java.util.Arrays.fill(page, (byte) 0);
+            return;
+        }
+        if (len == pagesize) {
+            readFully(data, ByteBuffer.wrap(page), off);
+            return;
+        }
+        byte[] comp = new byte[len];
+        readFully(data, ByteBuffer.wrap(comp), off);
+        PageCodec.decompress(comp, 0, len, page, 0, pagesize);
+    }
+
+    private void writePage(int pageIdx, byte[] page) throws IOException {
+        // compression hors verrou
+        byte[] comp;
+        int len;
+        if (isZero(page)) {
+            comp = null;
+            len = 0;
+        } else {
+            comp = new byte[pagesize - 1];
+            len = PageCodec.compress(page, 0, pagesize, comp);
+            if (len < 0) {
+                comp = page; // incompressible : stockée telle quelle
+                len = pagesize;
+            }
+        }
+        ReentrantReadWriteLock.WriteLock lock = pageLock(pageIdx).writeLock();
+        lock.lock();
+        try {
+            storePage(pageIdx, comp, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Écrit la version compressée de la page sous son verrou d'écriture
+    private void storePage(int pageIdx, byte[] comp, int len) throws IOException {
+        long off;
+        int cap;
+        long oldOff = 0;
+        int oldCap = 0;
+        synchronized (this) {
+            if (pageIdx >= pageCount) {
+                // pages intermédiaires jamais écrites : nulles
+                ensureCapacity(pageIdx + 1);
+                for (int i = pageCount; i < pageIdx; i++) {
+                    offsets[i] = 0;
+                    lens[i] = 0;
+                    caps[i] = 0;
+                    writeEntry(i);
+                }
+                pageCount = pageIdx + 1;
+                offsets[pageIdx] = 0;
+                lens[pageIdx] = 0;
+                caps[pageIdx] = 0;
+            }
+            off = offsets[pageIdx];
+            cap = caps[pageIdx];
+            if (len > cap || (len == 0 && cap > 0)) {
+                oldOff = off; // rendu après l'écriture de la nouvelle entrée
+                oldCap = cap;
+                cap = len == 0 ? 0 : roundUp(len);
+                off = cap == 0 ? 0 : allocSlot(cap);
+            }
+        }
+        if (len > 0) writeFully(data, ByteBuffer.wrap(comp, 0, len), off);
+        synchronized (this) {
+            offsets[pageIdx] = off;
+            lens[pageIdx] = len;
+            caps[pageIdx] = cap;
+            writeEntry(pageIdx);
+            if (oldCap > 0) addFreeSlot(oldOff, oldCap);
+        }
+    }
+
+    /** Libère les emplacements des pages entièrement couvertes par la plage (elles redeviennent nulles) */
+    @Override
+    public void discard(long offset, long length) throws IOException {
+        int first = (int) ((offset + pagesize - 1) / pagesize);
+        long last = (offset + length) / pagesize;
+        for (int i = first; i < last; i++) {
+            ReentrantReadWriteLock.WriteLock lock = pageLock(i).writeLock();
+            lock.lock();
+            try {
+                synchronized (this) {
+                    if (i >= pageCount) return;
+                    if (lens[i] == 0 && caps[i] == 0) continue;
+                    long off = offsets[i];
+                    int cap = caps[i];
+                    offsets[i] = 0;
+                    lens[i] = 0;
+                    caps[i] = 0;
+                    writeEntry(i);
+                    if (cap > 0) addFreeSlot(off, cap);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Réserve un emplacement d'au moins cap octets : plus petit emplacement libre suffisant, sinon en fin de fichier
+    private long allocSlot(int cap) {
+        Map.Entry<Integer, ArrayDeque<Long>> e = freeSlots.ceilingEntry(cap);
+        if (e != null) {
+            long off = e.getValue().poll();
+            if (e.getValue().isEmpty()) freeSlots.remove(e.getKey());
+            if (e.getKey() > cap) addFreeSlot(off + cap, e.getKey() - cap); // le reste redevient libre
+            return off;
+        }
+        long off = dataEnd;
+        dataEnd += cap;
+        return off;
+    }
+
+    private void addFreeSlot(long off, int cap) {
+        freeSlots.computeIfAbsent(cap, k -> new ArrayDeque<>()).add(off);
+    }
+
+    private void writeEntry(int pageIdx) throws IOException {
+        ByteBuffer e = ByteBuffer.allocate(ENTRY_SIZE);
+        e.putLong(offsets[pageIdx]).putInt(lens[pageIdx]).putInt(caps[pageIdx]).flip();
+        writeFully(idx, e, IDX_HEADER + (long) pageIdx * ENTRY_SIZE);
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= offsets.length) return;
+        int c = Math.max(n, offsets.length * 2);
+        offsets = java.util.Arrays.copyOf(offsets, c);
+        lens = java.util.Arrays.copyOf(lens, c);
+        caps = java.util.Arrays.copyOf(caps, c);
+    }
+
+    private static int roundUp(int len) {
+        return (len + SLOT_ALIGN - 1) / SLOT_ALIGN * SLOT_ALIGN;
+    }
+
+    private static boolean isZero(byte[] page) {
+        for (byte b : page) if (b != 0) return false;
+        return true;
+    }
+
+    /** Taille logique (pages * pagesize) */
+    @Override
+    public synchronized long size() { return (long) pageCount * pagesize; }
+
+    /** Taille physique de DataN.bin (octets compressés, trous compris) */
+    synchronized long storedSize() throws IOException { return data.size(); }
+
+    @Override
+    public synchronized void truncate(long size) throws IOException {
+        int n = (int) (size / pagesize);
+        if (n >= pageCount) return;
+        pageCount = n;
+        idx.truncate(IDX_HEADER + (long) n * ENTRY_SIZE);
+        // recalculer la fin utile de DataN.bin et oublier les emplacements libres au-delà
+        long end = 0;
+        for (int i = 0; i < n; i++) {
+            if (caps[i] > 0) end = Math.max(end, offsets[i] + caps[i]);
+        }
+        dataEnd = end;
+        final long limit = end;
+        freeSlots.values().forEach(q -> q.removeIf(off -> off >= limit));
+        freeSlots.values().removeIf(ArrayDeque::isEmpty);
+        if (data.size() > end) data.truncate(end);
+    }
+
+    @Override
+    public void force() throws IOException {
+        data.force(true);
+        idx.force(true);
+    }
+
+    @Override
+    public boolean isOpen() { return data.isOpen() && idx.isOpen(); }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            idx.close();
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, pos);
+            if (n < 0) break;
+            pos += n;
+        }
+        while (dst.hasRemaining()) dst.put((byte) 0);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer src, long pos) throws IOException {
+        while (src.hasRemaining()) {
+            pos += ch.write(src, pos);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 import java.io.*;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -12,7 +14,26 @@ public class DBConfig {
     private int dm_maxfilecount;
     // TP3: BufferManager configuration
     private int bm_buffercount;   // number of frames/buffers
-    private String bm_policy;     // replacement policy: LRU or MRU
+    private String bm_policy;     // replacement policy: LRU, MRU, CLOCK or 2Q
+    // DiskManager: mode d'E/S des fichiers DataN.bin
+    private String dm_iomode = "CHANNEL"; // CHANNEL (FileChannel positionnel), MMAP (MappedByteBuffer) ou DIRECT (O_DIRECT)
+    private long dm_mmapchunk = 64L * 1024 * 1024; // taille d'un segment mappé en mode MMAP (octets)
+    private int dm_extentsize = 1024 * 1024;        // croissance des fichiers par extents (octets, >= pagesize)
+    private int dm_iothreads = 4;                   // threads d'E/S asynchrones (readPageAsync/writePageAsync)
+    private int dm_ioqueuedepth = 64;               // requêtes asynchrones en attente max (au-delà : exécution par l'appelant)
+    private String dm_compression = "NONE";          // NONE ou LZ (pages compressées + index DataN.idx)
+    private String dm_durability = "NONE";           // NONE (force au Finish seulement) ou FLUSH (DiskManager.Sync à chaque FlushBuffers ou Checkpoint)
+    private String dm_datadirs = "BinData";         // répertoires de données séparés par des virgules (relatifs à dbpath), DataN.bin dans le N % D-ième
+    private int bm_scanring = 8;                    // frames de l'anneau privé d'un parcours complet (ScanRing), 0 = pool partagé
+    private boolean bm_offheap = false;             // frames découpées dans une arène hors tas (ByteBuffer direct)
+    private int bm_writerdelay = 0;                 // période du BackgroundWriter (ms), 0 = désactivé
+    private int bm_writerpages = 32;                // pages écrites au plus par passage du BackgroundWriter
+    private int bm_dirtyratio = 10;                 // % de frames dirty au-delà duquel le BackgroundWriter écrit toute page dirty
+    private int bm_readahead = 0;                   // pages lues par anticipation lors d'un accès séquentiel, 0 = désactivé
+    private int bm_checkpointdelay = 0;             // période du Checkpointer (ms entre deux points de contrôle), 0 = désactivé
+    private int bm_checkpointrate = 1000;           // pages écrites par seconde au plus par le Checkpointer, 0 = sans limite
+    private String bm_memorybudget = "";            // taille du pool en octets (512M, 2G...) ou en % de la mémoire max, "" = bm_buffercount
+    private String bm_pools = "";                   // pools nommés en plus de default : nom:taille[:politique],... (cf. BufferPools)
 
     /**
      * Constructeur par défaut (valeurs par défaut pour pagesize et dm_maxfilecount)
@@ -49,6 +70,34 @@ public class DBConfig {
     // TP3 getters
     public int getBm_buffercount() { return bm_buffercount; }
     public String getBm_policy() { return bm_policy; }
+    public String getDm_iomode() { return dm_iomode; }
+    public long getDm_mmapchunk() { return dm_mmapchunk; }
+    public int getDm_extentsize() { return dm_extentsize; }
+    public int getDm_iothreads() { return dm_iothreads; }
+    public int getDm_ioqueuedepth() { return dm_ioqueuedepth; }
+    public String getDm_datadirs() { return dm_datadirs; }
+    public String getDm_compression() { return dm_compression; }
+    public String getDm_durability() { return dm_durability; }
+    public int getBm_scanring() { return bm_scanring; }
+    public boolean isBm_offheap() { return bm_offheap; }
+    public int getBm_writerdelay() { return bm_writerdelay; }
+    public int getBm_writerpages() { return bm_writerpages; }
+    public int getBm_dirtyratio() { return bm_dirtyratio; }
+    public int getBm_readahead() { return bm_readahead; }
+    public int getBm_checkpointdelay() { return bm_checkpointdelay; }
+    public int getBm_checkpointrate() { return bm_checkpointrate; }
+    public String getBm_memorybudget() { return bm_memorybudget; }
+    public String getBm_pools() { return bm_pools; }
+
+    /** Liste des répertoires de données (dm_datadirs découpé, entrées vides ignorées). */
+    public List<String> getDataDirList() {
+        List<String> dirs = new ArrayList<>();
+        for (String d : dm_datadirs.split(",")) {
+            if (!d.trim().isEmpty()) dirs.add(d.trim());
+        }
+        if (dirs.isEmpty()) dirs.add("BinData");
+        return dirs;
+    }
 
     public void setDbpath(String dbpath) {
         this.dbpath = dbpath;
@@ -65,6 +114,125 @@ public class DBConfig {
     // TP3 setters
     public void setBm_buffercount(int bm_buffercount) { this.bm_buffercount = bm_buffercount; }
     public void setBm_policy(String bm_policy) { this.bm_policy = (bm_policy == null || bm_policy.isEmpty()) ? "LRU" : bm_policy.toUpperCase(); }
+    public void setDm_iomode(String dm_iomode) { this.dm_iomode = (dm_iomode == null || dm_iomode.isEmpty()) ? "CHANNEL" : dm_iomode.toUpperCase(); }
+    public void setDm_mmapchunk(long dm_mmapchunk) { this.dm_mmapchunk = dm_mmapchunk; }
+    public void setDm_extentsize(int dm_extentsize) { this.dm_extentsize = dm_extentsize; }
+    public void setDm_iothreads(int dm_iothreads) { this.dm_iothreads = dm_iothreads; }
+    public void setDm_ioqueuedepth(int dm_ioqueuedepth) { this.dm_ioqueuedepth = dm_ioqueuedepth; }
+    public void setDm_compression(String dm_compression) { this.dm_compression = (dm_compression == null || dm_compression.isEmpty()) ? "NONE" : dm_compression.toUpperCase(); }
+    public void setDm_durability(String dm_durability) { this.dm_durability = (dm_durability == null || dm_durability.isEmpty()) ? "NONE" : dm_durability.toUpperCase(); }
+    public void setBm_scanring(int bm_scanring) { this.bm_scanring = Math.max(0, bm_scanring); }
+    public void setBm_offheap(boolean bm_offheap) { this.bm_offheap = bm_offheap; }
+    public void setBm_writerdelay(int bm_writerdelay) { this.bm_writerdelay = Math.max(0, bm_writerdelay); }
+    public void setBm_writerpages(int bm_writerpages) { this.bm_writerpages = Math.max(1, bm_writerpages); }
+    public void setBm_dirtyratio(int bm_dirtyratio) { this.bm_dirtyratio = Math.max(0, Math.min(100, bm_dirtyratio)); }
+    public void setBm_readahead(int bm_readahead) { this.bm_readahead = Math.max(0, bm_readahead); }
+    public void setBm_checkpointdelay(int bm_checkpointdelay) { this.bm_checkpointdelay = Math.max(0, bm_checkpointdelay); }
+    public void setBm_checkpointrate(int bm_checkpointrate) { this.bm_checkpointrate = Math.max(0, bm_checkpointrate); }
+    /** Budget mémoire du pool : null ou "" pour revenir à bm_buffercount ; une valeur invalide est ignorée */
+    public void setBm_memorybudget(String bm_memorybudget) {
+        String v = bm_memorybudget == null ? "" : bm_memorybudget.trim().toUpperCase();
+        if (v.isEmpty() || parseMemoryBudget(v, 1L << 30) >= 0) this.bm_memorybudget = v;
+    }
+
+    /** Pools nommés (cf. BufferPools) : null ou "" pour aucun ; une liste invalide est ignorée */
+    public void setBm_pools(String bm_pools) {
+        String v = bm_pools == null ? "" : bm_pools.trim();
+        if (BufferPools.parse(v) != null) this.bm_pools = v;
+    }
+
+    /**
+     * Copie de la configuration pour un pool de buffers nommé : bm_buffercount et bm_policy
+     * remplacés, sans budget mémoire ni pools nommés ; les autres paramètres sont conservés.
+     */
+    DBConfig forPool(int buffercount, String policy) {
+        DBConfig c = new DBConfig(dbpath, pagesize, dm_maxfilecount, buffercount, policy);
+        c.dm_iomode = dm_iomode;
+        c.dm_mmapchunk = dm_mmapchunk;
+        c.dm_extentsize = dm_extentsize;
+        c.dm_iothreads = dm_iothreads;
+        c.dm_ioqueuedepth = dm_ioqueuedepth;
+        c.dm_compression = dm_compression;
+        c.dm_durability = dm_durability;
+        c.dm_datadirs = dm_datadirs;
+        c.bm_scanring = bm_scanring;
+        c.bm_offheap = bm_offheap;
+        c.bm_writerdelay = bm_writerdelay;
+        c.bm_writerpages = bm_writerpages;
+        c.bm_dirtyratio = bm_dirtyratio;
+        c.bm_readahead = bm_readahead;
+        c.bm_checkpointdelay = bm_checkpointdelay;
+        c.bm_checkpointrate = bm_checkpointrate;
+        return c;
+    }
+
+    /**
+     * Convertit un budget mémoire en octets : nombre d'octets avec suffixe optionnel K, M ou G
+     * (puissances de 1024), ou pourcentage de max ("25%"). Retourne -1 si spec est vide ou invalide.
+     */
+    public static long parseMemoryBudget(String spec, long max) {
+        if (spec == null) return -1;
+        String v = spec.trim().toUpperCase();
+        if (v.isEmpty()) return -1;
+        try {
+            if (v.endsWith("%")) {
+                double pct = Double.parseDouble(v.substring(0, v.length() - 1).trim());
+                return pct > 0 && pct <= 100 ? (long) (max * pct / 100) : -1;
+            }
+            long unit = 1;
+            char last = v.charAt(v.length() - 1);
+            if (last == 'K') unit = 1L << 10;
+            else if (last == 'M') unit = 1L << 20;
+            else if (last == 'G') unit = 1L << 30;
+            if (unit != 1) v = v.substring(0, v.length() - 1).trim();
+            long n = Long.parseLong(v);
+            return n > 0 ? n * unit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    public void setDm_datadirs(String dm_datadirs) { this.dm_datadirs = (dm_datadirs == null || dm_datadirs.trim().isEmpty()) ? "BinData" : dm_datadirs.trim(); }
+
+    private static String unquote(String value) {
+        if (value.startsWith("'") && value.endsWith("'")) value = value.substring(1, value.length() - 1);
+        if (value.startsWith("\"") && value.endsWith("\"")) value = value.substring(1, value.length() - 1);
+        return value;
+    }
+
+    /**
+     * Applique une clé optionnelle (paramètres DiskManager/BufferManager ajoutés après le TP3).
+     * Les valeurs numériques invalides sont ignorées, comme pour les autres clés.
+     */
+    private void applyOption(String key, String value) {
+        if (value == null) return;
+        value = unquote(value.trim());
+        if (value.isEmpty()) return;
+        switch (key) {
+            case "dm_iomode": setDm_iomode(value); break;
+            case "dm_mmapchunk": try { setDm_mmapchunk(Long.parseLong(value)); } catch (NumberFormatException ignored) {} break;
+            case "dm_extentsize": try { setDm_extentsize(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "dm_iothreads": try { setDm_iothreads(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "dm_ioqueuedepth": try { setDm_ioqueuedepth(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "dm_datadirs": setDm_datadirs(value); break;
+            case "dm_compression": setDm_compression(value); break;
+            case "dm_durability": setDm_durability(value); break;
+            case "bm_scanring": try { setBm_scanring(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "bm_offheap": setBm_offheap(Boolean.parseBoolean(value)); break;
+            case "bm_writerdelay": try { setBm_writerdelay(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "bm_writerpages": try { setBm_writerpages(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "bm_dirtyratio": try { setBm_dirtyratio(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "bm_readahead": try { setBm_readahead(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "bm_checkpointdelay": try { setBm_checkpointdelay(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "bm_checkpointrate": try { setBm_checkpointrate(Integer.parseInt(value)); } catch (NumberFormatException ignored) {} break;
+            case "bm_memorybudget": setBm_memorybudget(value); break;
+            case "bm_pools": setBm_pools(value); break;
+            default: break;
+        }
+    }
+
+    private static final String[] OPTION_KEYS = { "dm_iomode", "dm_mmapchunk", "dm_extentsize", "dm_iothreads", "dm_ioqueuedepth", "dm_datadirs", "dm_compression", "dm_durability",
+            "bm_scanring", "bm_offheap", "bm_writerdelay", "bm_writerpages", "bm_dirtyratio", "bm_readahead", "bm_memorybudget", "bm_pools",
+            "bm_checkpointdelay", "bm_checkpointrate" };
 
     public static DBConfig LoadDBConfig(String fichier_config) throws IOException, IllegalArgumentException {
         if (!Files.exists(Paths.get(fichier_config))) {
@@ -107,7 +275,9 @@ public class DBConfig {
             if (bmPol.startsWith("\"") && bmPol.endsWith("\"")) bmPol = bmPol.substring(1, bmPol.length() - 1);
         }
 
-        return new DBConfig(dbpath, pagesize, maxfiles, bmCount, bmPol);
+        DBConfig cfg = new DBConfig(dbpath, pagesize, maxfiles, bmCount, bmPol);
+        for (String key : OPTION_KEYS) cfg.applyOption(key, props.getProperty(key));
+        return cfg;
     }
 
     public static DBConfig LoadDBConfigSimple(String fichier_config) throws IOException, IllegalArgumentException {
@@ -120,6 +290,7 @@ public class DBConfig {
         int maxfilesVal = 16;
         int bmCountVal = 2;
         String bmPolVal = "LRU";
+        Properties options = new Properties();
         try (BufferedReader reader = Files.newBufferedReader(Paths.get(fichier_config))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -137,7 +308,7 @@ public class DBConfig {
                     case "dm_maxfilecount": try { maxfilesVal = Integer.parseInt(value); } catch (NumberFormatException ignored) {} break;
                     case "bm_buffercount": try { bmCountVal = Integer.parseInt(value); } catch (NumberFormatException ignored) {} break;
                     case "bm_policy": bmPolVal = value; break;
-                    default: break;
+                    default: options.setProperty(key, value); break;
                 }
             }
         }
@@ -145,7 +316,9 @@ public class DBConfig {
         if (dbpathVal == null || dbpathVal.trim().isEmpty()) {
             throw new IllegalArgumentException("Le paramètre 'dbpath' n'a pas été trouvé dans le fichier de configuration");
         }
-        return new DBConfig(dbpathVal, pagesizeVal, maxfilesVal, bmCountVal, bmPolVal);
+        DBConfig cfg = new DBConfig(dbpathVal, pagesizeVal, maxfilesVal, bmCountVal, bmPolVal);
+        for (String key : OPTION_KEYS) cfg.applyOption(key, options.getProperty(key));
+        return cfg;
     }
 
     @Override
@@ -156,6 +329,24 @@ public class DBConfig {
                 ", dm_maxfilecount=" + dm_maxfilecount +
                 ", bm_buffercount=" + bm_buffercount +
                 ", bm_policy=" + bm_policy +
+                ", dm_iomode=" + dm_iomode +
+                ", dm_mmapchunk=" + dm_mmapchunk +
+                ", dm_extentsize=" + dm_extentsize +
+                ", dm_iothreads=" + dm_iothreads +
+                ", dm_ioqueuedepth=" + dm_ioqueuedepth +
+                ", dm_datadirs=" + dm_datadirs +
+                ", dm_compression=" + dm_compression +
+                ", dm_durability=" + dm_durability +
+                ", bm_scanring=" + bm_scanring +
+                ", bm_offheap=" + bm_offheap +
+                ", bm_writerdelay=" + bm_writerdelay +
+                ", bm_writerpages=" + bm_writerpages +
+                ", bm_dirtyratio=" + bm_dirtyratio +
+                ", bm_readahead=" + bm_readahead +
+                ", bm_memorybudget=" + bm_memorybudget +
+                ", bm_pools=" + bm_pools +
+                ", bm_checkpointdelay=" + bm_checkpointdelay +
+                ", bm_checkpointrate=" + bm_checkpointrate +
                 '}';
     }
 
@@ -168,6 +359,24 @@ public class DBConfig {
         if (pagesize != dbConfig.pagesize) return false;
         if (dm_maxfilecount != dbConfig.dm_maxfilecount) return false;
         if (bm_buffercount != dbConfig.bm_buffercount) return false;
+        if (!dm_iomode.equals(dbConfig.dm_iomode)) return false;
+        if (dm_mmapchunk != dbConfig.dm_mmapchunk) return false;
+        if (dm_extentsize != dbConfig.dm_extentsize) return false;
+        if (dm_iothreads != dbConfig.dm_iothreads) return false;
+        if (dm_ioqueuedepth != dbConfig.dm_ioqueuedepth) return false;
+        if (!dm_datadirs.equals(dbConfig.dm_datadirs)) return false;
+        if (!dm_compression.equals(dbConfig.dm_compression)) return false;
+        if (!dm_durability.equals(dbConfig.dm_durability)) return false;
+        if (bm_scanring != dbConfig.bm_scanring) return false;
+        if (bm_offheap != dbConfig.bm_offheap) return false;
+        if (bm_writerdelay != dbConfig.bm_writerdelay) return false;
+        if (bm_writerpages != dbConfig.bm_writerpages) return false;
+        if (bm_dirtyratio != dbConfig.bm_dirtyratio) return false;
+        if (bm_readahead != dbConfig.bm_readahead) return false;
+        if (!bm_memorybudget.equals(dbConfig.bm_memorybudget)) return false;
+        if (!bm_pools.equals(dbConfig.bm_pools)) return false;
+        if (bm_checkpointdelay != dbConfig.bm_checkpointdelay) return false;
+        if (bm_checkpointrate != dbConfig.bm_checkpointrate) return false;
         return bm_policy != null ? bm_policy.equals(dbConfig.bm_policy) : dbConfig.bm_policy == null;
     }
 
@@ -178,6 +387,24 @@ public class DBConfig {
         result = 31 * result + dm_maxfilecount;
         result = 31 * result + bm_buffercount;
         result = 31 * result + (bm_policy != null ? bm_policy.hashCode() : 0);
+        result = 31 * result + dm_iomode.hashCode();
+        result = 31 * result + Long.hashCode(dm_mmapchunk);
+        result = 31 * result + dm_extentsize;
+        result = 31 * result + dm_iothreads;
+        result = 31 * result + dm_ioqueuedepth;
+        result = 31 * result + dm_datadirs.hashCode();
+        result = 31 * result + dm_compression.hashCode();
+        result = 31 * result + dm_durability.hashCode();
+        result = 31 * result + bm_scanring;
+        result = 31 * result + Boolean.hashCode(bm_offheap);
+        result = 31 * result + bm_writerdelay;
+        result = 31 * result + bm_writerpages;
+        result = 31 * result + bm_dirtyratio;
+        result = 31 * result + bm_readahead;
+        result = 31 * result + bm_memorybudget.hashCode();
+        result = 31 * result + bm_pools.hashCode();
+        result = 31 * result + bm_checkpointdelay;
+        result = 31 * result + bm_checkpointrate;
         return result;
     }
 }
\ No newline at end of file
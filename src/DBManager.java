@@ -5,7 +5,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.StringJoiner;
 public class DBManager {
     private DBConfig config;
@@ -17,6 +20,43 @@ public class DBManager {
     public DBConfig getConfig() {
         return config;
     }
+
+    /**
+     * Relie les relations du catalogue au DiskManager et à leur pool de buffers (Relation.getPoolName) ;
+     * une relation liée à un pool absent de pools utilise le pool default.
+     */
+    public void attach(DiskManager dm, BufferPools pools) {
+        for (Relation r : relations) {
+            r.setDiskManager(dm);
+            BufferManager bm = pools.get(r.getPoolName());
+            if (bm == null) {
+                System.err.println("Pool " + r.getPoolName() + " inconnu pour " + r.getName() + " : pool default utilisé");
+                bm = pools.getDefault();
+            }
+            r.setBufferManager(bm);
+        }
+    }
+
+    /**
+     * Lie la table nomTable au pool nommé : ses pages ne passeront plus que par ce pool. Les pages de
+     * la relation (Header Page et pages de données) sont d'abord écrites si dirty et retirées de
+     * l'ancien pool (BufferManager.FlushPages), pour qu'aucune page ne reste en cache dans deux
+     * pools ; les pages des autres tables y restent. La liaison est conservée par saveState.
+     */
+    public void bindTable(String nomTable, String pool, BufferPools pools) throws IOException {
+        Relation r = getTable(nomTable);
+        if (r == null) throw new IllegalArgumentException("Table " + nomTable + " does not exist.");
+        BufferManager target = pools.get(pool);
+        if (target == null) throw new IllegalArgumentException("Pool inconnu : " + pool);
+        BufferManager old = r.getBufferManager();
+        if (old != null && old != target && r.getHeaderPageId() != null) {
+            List<PageId> pages = new ArrayList<>(r.getDataPages());
+            pages.add(r.getHeaderPageId());
+            old.FlushPages(pages);
+        }
+        r.setPoolName(pool);
+        r.setBufferManager(target);
+    }
     public void addTable (Relation tab){
      if ( relations.contains(tab)){
         System.out.println("Table already exists.");
@@ -80,6 +120,7 @@ public class DBManager {
                     bw.write("HEADER " + hFile + " " + hPage + "\n");
 
                     bw.write("NBSLOTS " + r.getNbSlotsPerDataPage() + "\n");
+                    if (!BufferPools.DEFAULT.equals(r.getPoolName())) bw.write("POOL " + r.getPoolName() + "\n");
                     List<ColumnInfo> cols = r.getColumns();
                     bw.write("COLUMNS " + cols.size() + "\n");
                     for (ColumnInfo c : cols) {
@@ -92,6 +133,39 @@ public class DBManager {
             System.err.println("Failed to save state: " + e.getMessage());
         }
     }
+    /**
+     * Compacte les fichiers de données en ligne : les pages des relations situées après des pages
+     * libres sont déplacées vers ces trous (chaînages et Header Pages corrigés), puis la queue libre
+     * des fichiers est tronquée. Les RecordId obtenus avant l'appel peuvent être invalidés.
+     * @return nombre de pages rendues au système
+     */
+    public int Shrink(DiskManager dm, BufferManager bm) throws IOException {
+        long before = totalPages(dm);
+        for (Relation r : relations) {
+            if (r.getHeaderPageId() == null) continue;
+            if (r.getDiskManager() == null) r.setDiskManager(dm);
+            if (r.getBufferManager() == null) r.setBufferManager(bm);
+            r.relocatePages();
+        }
+        // écrire les pages modifiées avant de tronquer : une page sale déplacée ne doit pas réétendre un fichier après coup
+        // (dans chaque pool utilisé par les relations)
+        bm.FlushBuffers();
+        Set<BufferManager> others = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Relation r : relations) {
+            if (r.getBufferManager() != null && r.getBufferManager() != bm) others.add(r.getBufferManager());
+        }
+        for (BufferManager other : others) other.FlushBuffers();
+        dm.Reclaim();
+        saveState(); // les Header Pages ont pu changer
+        return (int) (before - totalPages(dm));
+    }
+
+    private long totalPages(DiskManager dm) throws IOException {
+        long n = 0;
+        for (int f = 0; f < config.getDm_maxfilecount(); f++) n += dm.getPageCount(f);
+        return n;
+    }
+
     public void loadState(){
         Path savePath = Paths.get(config.getDbpath()).resolve("database.save");
         if (!Files.exists(savePath)) {
@@ -112,6 +186,7 @@ public class DBManager {
                 String tableName = line.substring("TABLE ".length());
                 PageId header = null;
                 int nbSlots = 0;
+                String pool = BufferPools.DEFAULT;
                 List<ColumnInfo> cols = new ArrayList<>();
 
                 while ((line = br.readLine()) != null && !line.equals("ENDTABLE")) {
@@ -129,6 +204,8 @@ public class DBManager {
                         if (parts.length >= 2) {
                             nbSlots = Integer.parseInt(parts[1]);
                         }
+                    } else if (line.startsWith("POOL ")) {
+                        pool = line.substring("POOL ".length()).trim();
                     } else if (line.startsWith("COL ")) {
                         String[] parts = line.split(" ", 4);
                         if (parts.length >= 4) {
@@ -142,6 +219,7 @@ public class DBManager {
 
                 if (!cols.isEmpty()) {
                     Relation rel = new Relation(tableName, cols, header, nbSlots, null, null);
+                    rel.setPoolName(pool);
                     loaded.add(rel);
                 }
             }
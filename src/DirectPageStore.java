@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PageStore en mode dm_iomode=DIRECT : fichier ouvert avec ExtendedOpenOption.DIRECT (O_DIRECT sous
+ * Linux) pour que le pool du BufferManager soit le seul cache des pages, sans double copie dans le
+ * cache du système.
+ *
+ * O_DIRECT impose des offsets, longueurs et adresses mémoire alignés sur la taille de bloc du
+ * système de fichiers : les transferts passent par un buffer direct aligné propre à chaque thread
+ * (ou directement dans le buffer de l'appelant s'il est déjà direct et aligné). Ce buffer est
+ * plafonné à MAX_BOUNCE octets : une suite plus longue est transférée en plusieurs morceaux
+ * alignés, si bien qu'une grosse écriture ne fixe pas autant de mémoire directe par thread.
+ *
+ * open() retombe sur un ChannelPageStore classique (avec un avertissement) si l'option n'existe pas
+ * dans la JVM, si pagesize n'est pas un multiple de la taille de bloc ou si le système de fichiers
+ * refuse O_DIRECT (tmpfs, certains FS réseau...).
+ */
+class DirectPageStore implements PageStore {
+    private static final int MAX_BOUNCE = 256 * 1024; // taille max du buffer d'un thread (arrondie à align)
+    private static volatile boolean warned = false;
+
+    private final FileChannel ch;
+    private final int align;
+    private final int maxBounce;
+    private final ThreadLocal<ByteBuffer> bounce = new ThreadLocal<>();
+
+    private DirectPageStore(FileChannel ch, int align) {
+        this.ch = ch;
+        this.align = align;
+        this.maxBounce = Math.max(align, MAX_BOUNCE / align * align);
+    }
+
+    static PageStore open(Path p, int pagesize) throws IOException {
+        OpenOption direct = directOption();
+        if (direct == null) return fallback(p, "option DIRECT indisponible dans cette JVM");
+        FileChannel ch = null;
+        try {
+            if (!Files.exists(p)) Files.createFile(p);
+            int align = (int) Files.getFileStore(p).getBlockSize();
+            if (align <= 0 || pagesize % align != 0) {
+                return fallback(p, "pagesize " + pagesize + " non multiple de la taille de bloc " + align);
+            }
+            ch = FileChannel.open(p, StandardOpenOption.READ, StandardOpenOption.WRITE, direct);
+            // certains systèmes de fichiers acceptent l'ouverture mais refusent la première E/S
+            ByteBuffer probe = ByteBuffer.allocateDirect(2 * align).alignedSlice(align);
+            probe.limit(align);
+            ch.read(probe, 0);
+            return new DirectPageStore(ch, align);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            if (ch != null) {
+                try { ch.close(); } catch (IOException ignored) {}
+            }
+            return fallback(p, e.toString());
+        }
+    }
+
+    private static OpenOption directOption() {
+        try {
+            Class<?> c = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            for (Object o : c.getEnumConstants()) {
+                if ("DIRECT".equals(((Enum<?>) o).name())) return (OpenOption) o;
+            }
+        } catch (ClassNotFoundException ignored) {
+        }
+        return null;
+    }
+
+    private static PageStore fallback(Path p, String reason) throws IOException {
+        if (!warned) {
+            warned = true;
+            System.err.println("DiskManager: E/S directes impossibles (" + reason + "), utilisation du mode CHANNEL");
+        }
+        return new ChannelPageStore(p);
+    }
+
+    // Buffer direct aligné de len octets (len <= maxBounce), réutilisé par le thread courant
+    private ByteBuffer bounce(int len) {
+        ByteBuffer b = bounce.get();
+        if (b == null || b.capacity() < len) {
+            int size = Math.max(len, align);
+            b = ByteBuffer.allocateDirect(size + align).alignedSlice(align);
+            bounce.set(b);
+        }
+        b.clear().limit(len);
+        return b;
+    }
+
+    private boolean isAligned(ByteBuffer b) {
+        return b.isDirect() && b.alignmentOffset(b.position(), align) == 0 && b.remaining() % align == 0;
+    }
+
+    private int readAt(ByteBuffer buf, long offset) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, offset + total);
+            if (n <= 0) break; // fin de fichier (une lecture courte n'est possible qu'en fin de fichier)
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer dst) throws IOException {
+        if (isAligned(dst)) {
+            readAt(dst, offset);
+        } else {
+            read(offset, new ByteBuffer[] { dst });
+        }
+        while (dst.hasRemaining()) dst.put((byte) 0);
+    }
+
+    @Override
+    public void write(long offset, ByteBuffer src) throws IOException {
+        if (isAligned(src)) {
+            long pos = offset;
+            while (src.hasRemaining()) pos += ch.write(src, pos);
+        } else {
+            write(offset, new ByteBuffer[] { src });
+        }
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer[] dsts) throws IOException {
+        // lectures alignées d'au plus maxBounce octets, réparties dans les buffers dans l'ordre
+        long total = 0;
+        for (ByteBuffer d : dsts) total += d.remaining();
+        int k = 0;
+        for (long done = 0; done < total; ) {
+            int len = (int) Math.min(total - done, maxBounce);
+            ByteBuffer b = bounce(len);
+            int got = readAt(b, offset + done);
+            b.flip();
+            while (b.hasRemaining()) {
+                if (!dsts[k].hasRemaining()) k++;
+                else transfer(b, dsts[k]);
+            }
+            if (got < len) break; // fin de fichier : le reste est mis à zéro
+            done += len;
+        }
+        for (ByteBuffer d : dsts) {
+            while (d.hasRemaining()) d.put((byte) 0);
+        }
+    }
+
+    @Override
+    public void write(long offset, ByteBuffer[] srcs) throws IOException {
+        // les buffers sont recopiés par morceaux d'au plus maxBounce octets, un write aligné par morceau
+        long total = 0;
+        for (ByteBuffer s : srcs) total += s.remaining();
+        int k = 0;
+        for (long done = 0; done < total; ) {
+            int len = (int) Math.min(total - done, maxBounce);
+            ByteBuffer b = bounce(len);
+            while (b.hasRemaining()) {
+                if (!srcs[k].hasRemaining()) k++;
+                else transfer(srcs[k], b);
+            }
+            b.flip();
+            long pos = offset + done;
+            while (b.hasRemaining()) pos += ch.write(b, pos);
+            done += len;
+        }
+    }
+
+    // Copie de from vers to autant d'octets que possible (positions avancées)
+    private static void transfer(ByteBuffer from, ByteBuffer to) {
+        int n = Math.min(from.remaining(), to.remaining());
+        ByteBuffer part = from.duplicate();
+        part.limit(part.position() + n);
+        to.put(part);
+        from.position(from.position() + n);
+    }
+
+    @Override
+    public long size() throws IOException { return ch.size(); }
+
+    @Override
+    public void truncate(long size) throws IOException { ch.truncate(size); }
+
+    @Override
+    public void force() throws IOException { ch.force(true); }
+
+    @Override
+    public boolean isOpen() { return ch.isOpen(); }
+
+    @Override
+    public void close() throws IOException { ch.close(); }
+}
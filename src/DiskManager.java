@@ -1,21 +1,103 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Gestionnaire de disque minimal
- * Stocke les pages dans BinData/Datax.bin et maintient une bitmap simple en mémoire
+ * Stocke les pages dans BinData/Datax.bin et maintient en mémoire une FreeSpaceMap par fichier
+ *
+ * Les E/S de pages passent par un PageStore par fichier, choisi selon dm_iomode :
+ * - CHANNEL (défaut) : FileChannel en accès positionnel (sémantique pread/pwrite) ;
+ * - MMAP : segments MappedByteBuffer, ReadPage/WritePage sont de simples copies mémoire ;
+ * - DIRECT : O_DIRECT via buffers alignés, sans cache système (repli sur CHANNEL si refusé).
+ * Aucune position partagée n'est modifiée, donc plusieurs threads peuvent lire et écrire des
+ * pages d'un même fichier en parallèle. Seules les bitmaps (allocation) sont protégées par le
+ * moniteur du DiskManager.
+ *
+ * Allocation : chaque fichier a une FreeSpaceMap (bitmap hiérarchique + compteur de pages libres)
+ * et stripeFree indique les fichiers ayant au moins une page libre ; appendFile[s] est le premier
+ * fichier de la bande s pouvant encore grandir. AllocPage ne parcourt donc plus les fichiers ni
+ * les bitmaps.
+ *
+ * Répartition (striping) : dm_datadirs liste plusieurs répertoires de données ; Data{i}.bin et
+ * Data{i}.meta vont dans le répertoire i % D (une « bande » par répertoire, par ex. un disque NVMe
+ * chacun). Avec D > 1, AllocPage sert les bandes à tour de rôle, si bien que des pages allouées
+ * consécutivement (et donc les lectures d'un parcours) sont réparties sur tous les disques.
+ * L'ordre de la liste ne doit pas changer entre deux sessions.
+ *
+ * Compression (dm_compression=LZ) : les fichiers passent par un CompressedPageStore (pages
+ * compressées de taille variable + index DataN.idx) ; le mode d'E/S est alors toujours CHANNEL.
+ *
+ * Croissance : un fichier plein est étendu d'un extent (dm_extentsize, arrondi à un multiple de
+ * pagesize) rempli de zéros en une seule écriture, au lieu d'une page à la fois ; les pages de
+ * l'extent non encore distribuées restent libres dans la FreeSpaceMap. Finish tronque la queue
+ * libre pour ne pas garder l'extent préalloué sur disque entre deux sessions.
+ *
+ * Métadonnées d'espace libre : DataN.meta (format décrit dans FreeSpaceMap) est mis à jour en
+ * place au lieu d'être réécrit en entier au Finish. Une allocation ou libération ne fait aucune
+ * E/S : elle note l'octet de bitmap modifié, et les octets notés sont réécrits (une écriture par
+ * suite d'octets contigus, sans force) juste avant la prochaine écriture de page, quel que soit
+ * le fichier, ainsi qu'au Sync et au Finish. Une page dont le contenu, ou un chaînage qui la
+ * désigne, a pu atteindre un fichier est donc déjà marquée utilisée dans DataN.meta : après un
+ * arrêt brutal du processus, aucune page n'est distribuée deux fois. Sync force la bitmap avec
+ * les données (group commit). Au redémarrage elle fait foi, sans supposer utilisées les pages
+ * qu'elle ne couvre pas (reste d'extent préalloué, pages allouées mais jamais écrites).
+ *
+ * E/S asynchrones : readPageAsync/writePageAsync s'exécutent sur un pool de dm_iothreads threads
+ * (créé au premier appel) dont la file est bornée à dm_ioqueuedepth requêtes ; quand elle est
+ * pleine, la requête s'exécute dans le thread appelant, ce qui freine naturellement le producteur.
+ *
+ * Durabilité groupée : les écritures ne sont pas forcées une à une. Chaque écriture note le
+ * fichier touché puis incrémente writeSeq ; Sync() force en une passe tous les fichiers touchés
+ * (données et .meta) et publie le numéro couvert dans syncedSeq. Un appelant dont les écritures
+ * sont déjà couvertes par le force en cours d'un autre thread repart sans rien forcer : N threads
+ * qui valident en même temps se partagent un seul fsync par fichier (group commit).
  */
 public class DiskManager {
     private final DBConfig config;
-    private final Path bindataDir;
-    private final Map<Integer, BitSet> fileBitmaps = new HashMap<>();
-    private final Map<Integer, RandomAccessFile> openFiles = new HashMap<>();
+    private final List<Path> dataDirs;                 // bande s = dataDirs.get(s)
+    private final int stripes;                         // nombre de bandes effectivement utilisables
+    private final Map<Integer, FreeSpaceMap> fileMaps = new HashMap<>();
+    private final BitSet[] stripeFree;                 // bit i de stripeFree[s] : le fichier s + i*stripes a une page libre
+    private final Map<Integer, FileChannel> metaFiles = new ConcurrentHashMap<>(); // DataN.meta ouverts, mis à jour en place (lus par Sync hors verrou)
+    private final int[] appendFile;                    // par bande : premier fichier n'ayant pas atteint maxPagesPerFile
+    private int nextStripe = 0;                        // bande servie par le prochain AllocPage
+    private final Map<Integer, PageStore> openFiles = new ConcurrentHashMap<>();
     private final int maxPagesPerFile;
+    private final boolean mmap;
+    private final boolean compressed;
+    private final int extentPages; // nombre de pages ajoutées à chaque extension de fichier
+    private volatile ThreadPoolExecutor ioPool; // E/S asynchrones, créé à la demande
+    private final AtomicLong writeSeq = new AtomicLong();          // numéro de la dernière écriture
+    private volatile long syncedSeq = 0;                           // écritures <= syncedSeq forcées sur disque
+    private final Set<Integer> unsyncedFiles = ConcurrentHashMap.newKeySet(); // DataN.bin écrits depuis le dernier Sync
+    private final Set<Integer> unsyncedMeta = ConcurrentHashMap.newKeySet();  // DataN.meta écrits depuis le dernier Sync
+    private final Map<Integer, BitSet> dirtyMeta = new HashMap<>();            // octets de bitmap à réécrire (sous this)
+    private volatile boolean metaPending;                                      // dirtyMeta non vide : à écrire avant la prochaine page
+    private final Object syncLock = new Object();                  // un seul Sync à la fois (ordre : syncLock puis this)
+    private final AtomicLong syncCount = new AtomicLong();         // passes de force effectuées
 
     public DiskManager(DBConfig config) {
         this.config = config;
-        this.bindataDir = Paths.get(config.getDbpath()).resolve("BinData");
+        this.dataDirs = new ArrayList<>();
+        for (String d : config.getDataDirList()) {
+            this.dataDirs.add(Paths.get(config.getDbpath()).resolve(d)); // un chemin absolu reste tel quel
+        }
+        this.stripes = Math.max(1, Math.min(dataDirs.size(), config.getDm_maxfilecount()));
+        this.stripeFree = new BitSet[stripes];
+        this.appendFile = new int[stripes];
+        resetAllocationState();
         // Allow test override of per-file max pages via system property (helps tests force multi-file growth)
         int mp = Integer.MAX_VALUE;
         String s = System.getProperty("dm.maxpagesperfile");
@@ -23,17 +105,22 @@ public class DiskManager {
             try { mp = Integer.parseInt(s); } catch (NumberFormatException ignored) {}
         }
         this.maxPagesPerFile = mp;
+        this.compressed = "LZ".equals(config.getDm_compression());
+        this.mmap = !compressed && "MMAP".equals(config.getDm_iomode());
+        this.extentPages = config.getPagesize() > 0 ? Math.max(1, config.getDm_extentsize() / config.getPagesize()) : 1;
     }
 
     /**
      * Initialisation : créer dossier BinData si nécessaire, ouvrir fichiers existants et charger bitmaps
      */
-    public void Init() throws IOException {
+    public synchronized void Init() throws IOException {
         // Validation basique
         if (config.getPagesize() <= 0) throw new IOException("pagesize invalide dans DBConfig");
 
-        if (!Files.exists(bindataDir)) {
-            Files.createDirectories(bindataDir);
+        for (Path dir : dataDirs) {
+            if (!Files.exists(dir)) {
+                Files.createDirectories(dir);
+            }
         }
         // Also create lowercase folder 'bindata' at project level if requested (some tests/tools expect it)
         Path lower = Paths.get(config.getDbpath()).resolve("bindata");
@@ -43,122 +130,319 @@ public class DiskManager {
 
         // Charger les fichiers existants Data0.bin ... Data{n}.bin jusqu'à dm_maxfilecount
         for (int i = 0; i < config.getDm_maxfilecount(); i++) {
-            Path p = bindataDir.resolve("Data" + i + ".bin");
+            Path p = dataDir(i).resolve("Data" + i + ".bin");
             if (Files.exists(p)) {
-                long length = Files.size(p);
+                PageStore store = openStore(p);
+                long length = store.size(); // taille logique (le fichier compressé est plus petit)
                 if (length % config.getPagesize() != 0) {
+                    store.close();
                     throw new IOException("Fichier " + p + " corrompu : taille non multiple de pagesize");
                 }
 
-                RandomAccessFile raf = new RandomAccessFile(p.toFile(), "rw");
-                openFiles.put(i, raf);
+                openFiles.put(i, store);
                 int pages = (int) (length / config.getPagesize());
 
                 // Try to load existing bitmap metadata if present
-                Path meta = bindataDir.resolve("Data" + i + ".meta");
+                Path meta = dataDir(i).resolve("Data" + i + ".meta");
+                FreeSpaceMap fsm;
+                boolean upToDate = false;
                 if (Files.exists(meta)) {
                     byte[] data = Files.readAllBytes(meta);
-                    BitSet bs = BitSet.valueOf(data);
-                    // If bitmap shorter than pages, expand and mark remaining pages used
-                    if (bs.length() < pages) {
-                        for (int j = bs.length(); j < pages; j++) bs.set(j);
-                    }
-                    fileBitmaps.put(i, bs);
+                    fsm = FreeSpaceMap.fromMeta(data, pages);
+                    upToDate = FreeSpaceMap.isIncrementalMeta(data);
                 } else {
                     // No meta: assume all existing pages are used
                     BitSet bs = new BitSet(pages);
-                    for (int j = 0; j < pages; j++) bs.set(j);
-                    fileBitmaps.put(i, bs);
+                    bs.set(0, pages);
+                    fsm = new FreeSpaceMap(bs, pages);
                 }
+                putMap(i, fsm);
+                // ancien format ou absent : réécrit une fois au format incrémental
+                openMeta(i, fsm, !upToDate);
+            }
+        }
+    }
+
+    // Répertoire (bande) du fichier Data{fileIdx}
+    private Path dataDir(int fileIdx) {
+        return dataDirs.get(fileIdx % dataDirs.size());
+    }
+
+    private void resetAllocationState() {
+        for (int s = 0; s < stripes; s++) {
+            stripeFree[s] = new BitSet();
+            appendFile[s] = s;
+        }
+        nextStripe = 0;
+    }
+
+    // Enregistre la carte d'un fichier et met à jour le résumé stripeFree
+    private void putMap(int fileIdx, FreeSpaceMap fsm) {
+        fileMaps.put(fileIdx, fsm);
+        updateHasFree(fileIdx, fsm);
+    }
+
+    private void updateHasFree(int fileIdx, FreeSpaceMap fsm) {
+        if (fileIdx >= config.getDm_maxfilecount()) return;
+        stripeFree[fileIdx % stripes].set(fileIdx / stripes, fsm.getFreeCount() > 0);
+    }
+
+    private void openMeta(int fileIdx, FreeSpaceMap fsm, boolean rewrite) throws IOException {
+        FileChannel ch = FileChannel.open(dataDir(fileIdx).resolve("Data" + fileIdx + ".meta"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (rewrite) {
+            ch.truncate(0);
+            ByteBuffer bb = ByteBuffer.wrap(fsm.toMeta());
+            long pos = 0;
+            while (bb.hasRemaining()) pos += ch.write(bb, pos);
+        }
+        metaFiles.put(fileIdx, ch);
+    }
+
+    /**
+     * Note que l'octet de DataN.meta contenant l'état de la page est à réécrire (cf. writeDirtyMeta)
+     */
+    private void persistPageState(int fileIdx, int pageIdx) {
+        if (!metaFiles.containsKey(fileIdx) || !fileMaps.containsKey(fileIdx)) return;
+        dirtyMeta.computeIfAbsent(fileIdx, k -> new BitSet()).set(pageIdx >> 3);
+        metaPending = true;
+        wrote(unsyncedMeta, fileIdx);
+    }
+
+    // Avant toute écriture de page : la bitmap en attente atteint DataN.meta avant les données (et
+    // les chaînages) qui supposent les pages allouées. Sans verrou tant que rien n'est en attente
+    private void writeMetaBeforeData() throws IOException {
+        if (metaPending) writeDirtyMeta();
+    }
+
+    // Réécrit en place les octets de bitmap notés par persistPageState : une écriture par suite
+    // d'octets contigus
+    private synchronized void writeDirtyMeta() throws IOException {
+        for (Map.Entry<Integer, BitSet> e : dirtyMeta.entrySet()) {
+            FileChannel ch = metaFiles.get(e.getKey());
+            FreeSpaceMap fsm = fileMaps.get(e.getKey());
+            BitSet bytes = e.getValue();
+            if (ch == null || fsm == null) continue;
+            for (int from = bytes.nextSetBit(0); from >= 0; from = bytes.nextSetBit(from)) {
+                int to = bytes.nextClearBit(from);
+                ByteBuffer run = ByteBuffer.allocate(to - from);
+                for (int b = from; b < to; b++) run.put(b - from, fsm.usedByte(b));
+                long pos = FreeSpaceMap.META_HEADER + (long) from;
+                while (run.hasRemaining()) pos += ch.write(run, pos);
+                from = to;
+            }
+        }
+        dirtyMeta.clear();
+        metaPending = false;
+    }
+
+    // À appeler après chaque écriture : le fichier est noté avant d'incrémenter writeSeq, donc tout
+    // Sync qui lit un writeSeq couvrant cette écriture trouve le fichier dans l'ensemble
+    private void wrote(Set<Integer> unsynced, int fileIdx) {
+        unsynced.add(fileIdx);
+        writeSeq.incrementAndGet();
+    }
+
+    /**
+     * Rend durables toutes les écritures terminées avant l'appel : un force par fichier touché
+     * depuis le dernier Sync (données et bitmap). Les appels concurrents sont regroupés : un thread
+     * qui attend la fin du Sync d'un autre n'en refait pas si ses écritures ont déjà été couvertes.
+     */
+    public void Sync() throws IOException {
+        long target = writeSeq.get();
+        if (syncedSeq >= target) return;
+        synchronized (syncLock) {
+            if (syncedSeq >= target) return; // couvert par le Sync précédent (group commit)
+            long upTo = writeSeq.get();
+            writeDirtyMeta();
+            for (Integer f : unsyncedFiles) {
+                unsyncedFiles.remove(f);
+                PageStore store = openFiles.get(f);
+                if (store == null) continue; // fichier fermé par Finish : déjà forcé
+                if (!store.isOpen()) store = ensureOpen(f);
+                store.force();
             }
+            for (Integer f : unsyncedMeta) {
+                unsyncedMeta.remove(f);
+                FileChannel meta = metaFiles.get(f);
+                if (meta != null) meta.force(true);
+            }
+            syncCount.incrementAndGet();
+            syncedSeq = upTo;
         }
     }
 
+    /** Nombre de passes de force effectuées par Sync (inspection/tests) */
+    public long getSyncCount() { return syncCount.get(); }
+
     /**
-     * Finish : fermer fichiers et sauvegarder bitmaps si nécessaire
+     * Finish : forcer et fermer fichiers de données et bitmaps
      */
     public void Finish() throws IOException {
+        // Terminer les E/S asynchrones en cours avant de fermer les fichiers (hors moniteur :
+        // une écriture asynchrone met à jour la bitmap sous ce moniteur)
+        ThreadPoolExecutor pool = ioPool;
+        if (pool != null) {
+            ioPool = null;
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (syncLock) {
+            closeFiles();
+            // tout est forcé par closeFiles
+            unsyncedFiles.clear();
+            unsyncedMeta.clear();
+            syncedSeq = writeSeq.get();
+        }
+    }
+
+    private synchronized void closeFiles() throws IOException {
+        writeDirtyMeta();
         // Persist bitmaps per file then close files
-        for (Map.Entry<Integer, RandomAccessFile> e : openFiles.entrySet()) {
+        for (Map.Entry<Integer, PageStore> e : openFiles.entrySet()) {
             int idx = e.getKey();
-            RandomAccessFile raf = e.getValue();
-            // flush
-            raf.getChannel().force(true);
-            // persist bitmap
-            BitSet bs = fileBitmaps.get(idx);
-            Path meta = bindataDir.resolve("Data" + idx + ".meta");
-            if (bs != null) {
-                byte[] data = bs.toByteArray();
-                Files.write(meta, data, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            }
-            raf.close();
+            PageStore store = e.getValue();
+            // flush (en mode MMAP : force des segments mappés puis du fichier)
+            store.force();
+            // la bitmap est déjà à jour sur disque : il suffit de la forcer
+            FileChannel meta = metaFiles.get(idx);
+            if (meta != null) meta.force(true);
+            FreeSpaceMap fsm = fileMaps.get(idx);
+            if (fsm != null) {
+                // rendre au système la queue libre (reste de l'extent préalloué, pages finales libérées)
+                long keep = (long) fsm.getUsedPrefixCount() * config.getPagesize();
+                if (keep < store.size()) store.truncate(keep);
+            }
+            store.close();
         }
+        for (FileChannel meta : metaFiles.values()) meta.close();
+        metaFiles.clear();
         openFiles.clear();
-        fileBitmaps.clear();
+        fileMaps.clear();
+        resetAllocationState();
     }
 
     /**
      * Alloue une page : réutilise une page libre si disponible sinon ajoute une page dans un fichier
+     * Coût indépendant du nombre de fichiers et de la fragmentation des bitmaps.
+     * Avec plusieurs répertoires de données, les bandes sont servies à tour de rôle ; une bande
+     * sans place cède son tour aux autres.
     */
-    public PageId AllocPage() throws IOException {
-        // 1) Réutiliser une page désallouée existante (parcourir fichiers existants)
-        for (int i = 0; i < config.getDm_maxfilecount(); i++) {
-            Path p = bindataDir.resolve("Data" + i + ".bin");
-            if (!Files.exists(p)) continue; // pas de fichier -> pas de pages libérées
-
-            RandomAccessFile raf = openFiles.get(i);
-            if (raf == null) {
-                // ouvrir en lecture/écriture pour connaître la longueur
-                raf = new RandomAccessFile(p.toFile(), "rw");
-                openFiles.put(i, raf);
+    public synchronized PageId AllocPage() throws IOException {
+        int first = nextStripe;
+        nextStripe = (nextStripe + 1) % stripes;
+        // bande courante d'abord (réutilisation puis extension), puis réutilisation dans une autre
+        // bande avant d'en étendre une : on ne fait pas grossir les fichiers tant qu'il reste des trous
+        PageId pid = allocInStripe(first, true);
+        if (pid != null) return pid;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int k = 1; k < stripes; k++) {
+                pid = allocInStripe((first + k) % stripes, pass == 1);
+                if (pid != null) return pid;
             }
+        }
+        throw new IOException("Nombre maximal de fichiers atteint");
+    }
 
-            long length = raf.length();
-                int pages = (int) (length / config.getPagesize());
-            if (pages == 0) continue;
-
-            BitSet bs = fileBitmaps.getOrDefault(i, new BitSet(pages));
-            int free = bs.nextClearBit(0);
-            if (free >= 0 && free < pages) {
-                bs.set(free);
-                fileBitmaps.put(i, bs);
-                return new PageId(i, free);
-            }
+    private PageId allocInStripe(int s, boolean mayGrow) throws IOException {
+        // 1) Réutiliser une page désallouée existante : premier fichier de la bande ayant une page libre
+        int i = stripeFree[s].nextSetBit(0);
+        if (i >= 0) {
+            int f = s + i * stripes;
+            FreeSpaceMap fsm = fileMaps.get(f);
+            int page = fsm.allocate();
+            updateHasFree(f, fsm);
+            persistPageState(f, page);
+            return new PageId(f, page);
         }
+        if (!mayGrow) return null;
 
         // 2) Aucun slot libre trouvé : ajouter une page (append) dans le premier fichier disponible
-        for (int i = 0; i < config.getDm_maxfilecount(); i++) {
-            ensureOpen(i); // crée le fichier si besoin
-            RandomAccessFile raf = openFiles.get(i);
-            if (raf == null) continue;
-            long length = raf.length();
-            int pages = (int) (length / config.getPagesize());
+        while (appendFile[s] < config.getDm_maxfilecount()) {
+            int f = appendFile[s];
+            PageStore store = ensureOpen(f); // crée le fichier si besoin
+            FreeSpaceMap fsm = fileMaps.get(f);
 
             // skip file if it already reached per-file max
-            if (pages >= maxPagesPerFile) continue;
+            if (fsm.getPageCount() >= maxPagesPerFile) {
+                appendFile[s] += stripes;
+                continue;
+            }
 
-            // étendre le fichier d'une page
-            raf.setLength(length + config.getPagesize());
+            // étendre le fichier d'un extent, sans dépasser maxPagesPerFile
+            int page = fsm.getPageCount();
+            int n = (int) Math.min(extentPages, (long) maxPagesPerFile - page);
+            preallocate(store, page, n);
+            fsm.grow(page + n);
+            fsm.markUsed(page);
+            updateHasFree(f, fsm);
+            persistPageState(f, page);
+            return new PageId(f, page);
+        }
+        return null;
+    }
 
-            BitSet bs = fileBitmaps.getOrDefault(i, new BitSet());
-            bs.set(pages);
-            fileBitmaps.put(i, bs);
-            return new PageId(i, pages);
+    /**
+     * Réserve physiquement n pages à partir de firstPage en écrivant des zéros (équivalent portable
+     * de fallocate : les blocs sont alloués en une fois, en écritures séquentielles de 1 Mo au plus)
+     */
+    private void preallocate(PageStore store, int firstPage, int n) throws IOException {
+        long offset = (long) firstPage * config.getPagesize();
+        long remaining = (long) n * config.getPagesize();
+        ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(remaining, 1024 * 1024));
+        while (remaining > 0) {
+            zeros.clear();
+            zeros.limit((int) Math.min(remaining, zeros.capacity()));
+            int len = zeros.remaining();
+            store.write(offset, zeros);
+            offset += len;
+            remaining -= len;
         }
+    }
 
-        throw new IOException("Nombre maximal de fichiers atteint");
+    /**
+     * Retourne le PageStore du fichier Data{fileIdx}.bin, en le créant/ouvrant si besoin.
+     * Le chemin rapide (fichier déjà ouvert) ne prend aucun verrou.
+     */
+    private PageStore ensureOpen(int fileIdx) throws IOException {
+        PageStore store = openFiles.get(fileIdx);
+        if (store != null && store.isOpen()) return store;
+        synchronized (this) {
+            store = openFiles.get(fileIdx);
+            if (store != null && store.isOpen()) return store;
+            // Ensure data directory exists
+            Path dir = dataDir(fileIdx);
+            if (!Files.exists(dir)) {
+                Files.createDirectories(dir);
+            }
+            // Un canal peut avoir été fermé par l'interruption d'un autre thread pendant une E/S : on le rouvre
+            store = openStore(dir.resolve("Data" + fileIdx + ".bin"));
+            openFiles.put(fileIdx, store);
+            if (!fileMaps.containsKey(fileIdx)) {
+                FreeSpaceMap fsm = new FreeSpaceMap();
+                int pages = (int) (store.size() / config.getPagesize());
+                fsm.grow(pages);
+                for (int i = 0; i < pages; i++) fsm.markUsed(i); // fichier inconnu : pages existantes supposées utilisées
+                putMap(fileIdx, fsm);
+                openMeta(fileIdx, fsm, true);
+            }
+            return store;
+        }
     }
 
-    private void ensureOpen(int fileIdx) throws IOException {
-        if (openFiles.containsKey(fileIdx)) return;
-        // Ensure BinData directory exists
-        if (!Files.exists(bindataDir)) {
-            Files.createDirectories(bindataDir);
+    // Ouvre le PageStore du mode configuré (redéfinissable pour instrumenter les E/S, cf. DiskManagerTests)
+    PageStore openStore(Path p) throws IOException {
+        if (compressed) return new CompressedPageStore(p, config.getPagesize());
+        if (Files.exists(CompressedPageStore.indexPath(p))) {
+            throw new IOException("Fichier " + p + " compressé : dm_compression=LZ requis");
         }
-        Path p = bindataDir.resolve("Data" + fileIdx + ".bin");
-        RandomAccessFile raf = new RandomAccessFile(p.toFile(), "rw");
-        openFiles.put(fileIdx, raf);
-        if (!fileBitmaps.containsKey(fileIdx)) fileBitmaps.put(fileIdx, new BitSet());
+        if (mmap) return new MappedPageStore(p, config.getDm_mmapchunk(), config.getPagesize());
+        if ("DIRECT".equals(config.getDm_iomode())) return DirectPageStore.open(p, config.getPagesize());
+        return new ChannelPageStore(p);
     }
 
     /**
@@ -166,14 +450,22 @@ public class DiskManager {
      */
     public void ReadPage(PageId pid, byte[] buff) throws IOException {
         if (buff.length < config.getPagesize()) throw new IllegalArgumentException("Buffer trop petit");
-        ensureOpen(pid.getFileIdx());
-        RandomAccessFile raf = openFiles.get(pid.getFileIdx());
+        ReadPage(pid, ByteBuffer.wrap(buff, 0, config.getPagesize()));
+    }
+
+    /**
+     * Lit une page dans buff[position, position + pagesize), sans modifier la position de buff.
+     * Avec un buffer direct (frame de l'arène hors tas du BufferManager), le FileChannel lit
+     * directement dans la frame, sans tableau intermédiaire.
+     */
+    public void ReadPage(PageId pid, ByteBuffer buff) throws IOException {
         long offset = (long) pid.getPageIdx() * config.getPagesize();
-        raf.seek(offset);
-        int read = raf.read(buff, 0, config.getPagesize());
-        if (read < config.getPagesize()) {
-            // remplir le reste par zéro
-            Arrays.fill(buff, read, config.getPagesize(), (byte)0);
+        try {
+            ensureOpen(pid.getFileIdx()).read(offset, pageSlice(buff));
+        } catch (ClosedChannelException e) {
+            if (e instanceof ClosedByInterruptException) throw e;
+            // canal fermé sous nos pieds par l'interruption d'un autre thread : réessayer une fois
+            ensureOpen(pid.getFileIdx()).read(offset, pageSlice(buff));
         }
     }
 
@@ -182,35 +474,259 @@ public class DiskManager {
      */
     public void WritePage(PageId pid, byte[] buff) throws IOException {
         if (buff.length < config.getPagesize()) throw new IllegalArgumentException("Buffer trop petit");
-        ensureOpen(pid.getFileIdx());
-        RandomAccessFile raf = openFiles.get(pid.getFileIdx());
+        WritePage(pid, ByteBuffer.wrap(buff, 0, config.getPagesize()));
+    }
+
+    /**
+     * Écrit la page contenue dans buff[position, position + pagesize), sans modifier la position de buff.
+     */
+    public void WritePage(PageId pid, ByteBuffer buff) throws IOException {
         long offset = (long) pid.getPageIdx() * config.getPagesize();
-        raf.seek(offset);
-        raf.write(buff, 0, config.getPagesize());
+        writeMetaBeforeData();
+        try {
+            ensureOpen(pid.getFileIdx()).write(offset, pageSlice(buff));
+        } catch (ClosedChannelException e) {
+            if (e instanceof ClosedByInterruptException) throw e;
+            ensureOpen(pid.getFileIdx()).write(offset, pageSlice(buff));
+        }
+        wrote(unsyncedFiles, pid.getFileIdx());
         // marquer comme utilisée
-        BitSet bs = fileBitmaps.get(pid.getFileIdx());
-        if (bs == null) {
-            bs = new BitSet();
-            fileBitmaps.put(pid.getFileIdx(), bs);
+        markUsed(pid);
+    }
+
+    // Vue de pagesize octets à partir de la position de buff (la position de buff reste inchangée)
+    private ByteBuffer pageSlice(ByteBuffer buff) {
+        if (buff.remaining() < config.getPagesize()) throw new IllegalArgumentException("Buffer trop petit");
+        ByteBuffer b = buff.duplicate();
+        b.limit(b.position() + config.getPagesize());
+        return b;
+    }
+
+    /**
+     * Lecture vectorielle d'une suite de pages contiguës du même fichier :
+     * buffs[k] reçoit la page (first.fileIdx, first.pageIdx + k). Une seule requête d'E/S
+     * (scatter) au lieu de buffs.length lectures de pagesize octets.
+     */
+    public void ReadPages(PageId first, byte[][] buffs) throws IOException {
+        if (buffs.length == 0) return;
+        long offset = (long) first.getPageIdx() * config.getPagesize();
+        ensureOpen(first.getFileIdx()).read(offset, wrapAll(buffs));
+    }
+
+    /**
+     * Écriture vectorielle (gather) d'une suite de pages contiguës du même fichier,
+     * buffs[k] étant écrit dans la page (first.fileIdx, first.pageIdx + k).
+     */
+    public void WritePages(PageId first, byte[][] buffs) throws IOException {
+        WritePages(first, wrapAll(buffs));
+    }
+
+    /** WritePages pour des buffers du tas ou directs (pagesize octets à partir de leur position) */
+    public void WritePages(PageId first, ByteBuffer[] buffs) throws IOException {
+        if (buffs.length == 0) return;
+        long offset = (long) first.getPageIdx() * config.getPagesize();
+        ByteBuffer[] srcs = new ByteBuffer[buffs.length];
+        for (int k = 0; k < buffs.length; k++) srcs[k] = pageSlice(buffs[k]);
+        writeMetaBeforeData();
+        ensureOpen(first.getFileIdx()).write(offset, srcs);
+        wrote(unsyncedFiles, first.getFileIdx());
+        for (int k = 0; k < buffs.length; k++) {
+            markUsed(new PageId(first.getFileIdx(), first.getPageIdx() + k));
+        }
+    }
+
+    private ByteBuffer[] wrapAll(byte[][] buffs) {
+        ByteBuffer[] bbs = new ByteBuffer[buffs.length];
+        for (int k = 0; k < buffs.length; k++) {
+            if (buffs[k].length < config.getPagesize()) throw new IllegalArgumentException("Buffer trop petit");
+            bbs[k] = ByteBuffer.wrap(buffs[k], 0, config.getPagesize());
+        }
+        return bbs;
+    }
+
+    /**
+     * Version asynchrone de ReadPage : la future est complétée avec buff une fois la page lue,
+     * ou exceptionnellement (CompletionException enveloppant l'IOException) en cas d'erreur.
+     */
+    public CompletableFuture<byte[]> readPageAsync(PageId pid, byte[] buff) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ReadPage(pid, buff);
+                return buff;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioPool());
+    }
+
+    /** readPageAsync pour un buffer du tas ou direct (cf. ReadPage(PageId, ByteBuffer)) */
+    public CompletableFuture<ByteBuffer> readPageAsync(PageId pid, ByteBuffer buff) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ReadPage(pid, buff);
+                return buff;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioPool());
+    }
+
+    /**
+     * Version asynchrone de WritePage. L'appelant ne doit pas modifier buff avant la complétion.
+     */
+    public CompletableFuture<Void> writePageAsync(PageId pid, byte[] buff) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                WritePage(pid, buff);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioPool());
+    }
+
+    private ThreadPoolExecutor ioPool() {
+        ThreadPoolExecutor pool = ioPool;
+        if (pool != null) return pool;
+        synchronized (this) {
+            if (ioPool == null) {
+                int n = Math.max(1, config.getDm_iothreads());
+                ThreadPoolExecutor p = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(Math.max(1, config.getDm_ioqueuedepth())),
+                        r -> {
+                            Thread t = new Thread(r, "dm-io");
+                            t.setDaemon(true);
+                            return t;
+                        },
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+                p.allowCoreThreadTimeOut(true);
+                ioPool = p;
+            }
+            return ioPool;
+        }
+    }
+
+    /**
+     * Mode MMAP uniquement : vue en lecture seule, sans copie, sur la page telle qu'elle est dans
+     * le fichier mappé. Retourne null dans les autres modes ou si la page est hors fichier.
+     * La vue reflète les écritures ultérieures (ce n'est pas un instantané).
+     */
+    public ByteBuffer MapPage(PageId pid) throws IOException {
+        PageStore store = ensureOpen(pid.getFileIdx());
+        if (!(store instanceof MappedPageStore)) return null;
+        return ((MappedPageStore) store).slice((long) pid.getPageIdx() * config.getPagesize(), config.getPagesize());
+    }
+
+    public boolean isMemoryMapped() { return mmap; }
+
+    /** Indique si la page est allouée (utilisée) dans son fichier ; utilisé par la lecture anticipée */
+    public synchronized boolean isAllocated(PageId pid) {
+        FreeSpaceMap fsm = fileMaps.get(pid.getFileIdx());
+        return fsm != null && pid.getPageIdx() >= 0 && pid.getPageIdx() < fsm.getPageCount() && fsm.isUsed(pid.getPageIdx());
+    }
+
+    private synchronized void markUsed(PageId pid) throws IOException {
+        FreeSpaceMap fsm = fileMaps.get(pid.getFileIdx());
+        if (fsm == null) {
+            fsm = new FreeSpaceMap();
+            fileMaps.put(pid.getFileIdx(), fsm);
         }
-        bs.set(pid.getPageIdx());
+        if (fsm.markUsed(pid.getPageIdx())) persistPageState(pid.getFileIdx(), pid.getPageIdx());
+        updateHasFree(pid.getFileIdx(), fsm);
     }
 
     /**
-     * Désalloue une page (marque libre)
+     * Désalloue une page (marque libre). L'espace de la page est rendu au PageStore (discard) et,
+     * si la queue libre du fichier dépasse deux extents, le fichier est tronqué en n'en gardant
+     * qu'un de préalloué (on évite ainsi de tronquer puis réétendre à chaque alloc/dealloc).
+     * En mode MMAP, pas de troncature automatique : une vue MapPage/GetPageView encore utilisée
+     * au-delà de la nouvelle fin du fichier provoquerait un SIGBUS ; la queue attend Reclaim ou Finish.
      */
-    public void DeallocPage(PageId pid) {
-        BitSet bs = fileBitmaps.get(pid.getFileIdx());
-        if (bs != null) bs.clear(pid.getPageIdx());
+    public synchronized void DeallocPage(PageId pid) throws IOException {
+        int f = pid.getFileIdx();
+        FreeSpaceMap fsm = fileMaps.get(f);
+        if (fsm == null) return;
+        if (fsm.markFree(pid.getPageIdx())) {
+            persistPageState(f, pid.getPageIdx());
+            ensureOpen(f).discard((long) pid.getPageIdx() * config.getPagesize(), config.getPagesize());
+            wrote(unsyncedFiles, f);
+            if (!mmap && fsm.getPageCount() - fsm.getUsedPrefixCount() > 2L * extentPages) {
+                truncateTail(f, fsm.getUsedPrefixCount() + extentPages);
+            }
+        }
+        updateHasFree(f, fsm);
+    }
+
+    /**
+     * Alloue la première page libre du fichier de pid si elle précède pid (cible d'un déplacement
+     * de page vers le début du fichier, cf. DBManager.Shrink), sinon retourne null
+     */
+    public synchronized PageId AllocPageBefore(PageId pid) throws IOException {
+        FreeSpaceMap fsm = fileMaps.get(pid.getFileIdx());
+        if (fsm == null) return null;
+        int page = fsm.firstFree();
+        if (page < 0 || page >= pid.getPageIdx()) return null;
+        fsm.markUsed(page);
+        updateHasFree(pid.getFileIdx(), fsm);
+        persistPageState(pid.getFileIdx(), page);
+        return new PageId(pid.getFileIdx(), page);
+    }
+
+    /**
+     * Rend au système la queue libre de chaque fichier (pages finales désallouées et reste des
+     * extents préalloués) sans attendre Finish. En mode MMAP, l'appelant s'assure qu'aucune vue
+     * MapPage/GetPageView n'est plus utilisée (son accès au-delà de la fin du fichier tuerait la JVM).
+     * @return nombre de pages retirées des fichiers
+     */
+    public synchronized int Reclaim() throws IOException {
+        int released = 0;
+        for (int f : new ArrayList<>(fileMaps.keySet())) {
+            released += truncateTail(f, fileMaps.get(f).getUsedPrefixCount());
+        }
+        return released;
+    }
+
+    // Tronque Data{f}.bin (et sa bitmap) à keepPages pages si elles sont moins nombreuses que l'existant
+    private int truncateTail(int f, int keepPages) throws IOException {
+        FreeSpaceMap fsm = fileMaps.get(f);
+        int old = fsm.getPageCount();
+        if (keepPages >= old) return 0;
+        PageStore store = ensureOpen(f);
+        long keep = (long) keepPages * config.getPagesize();
+        if (keep < store.size()) store.truncate(keep);
+        fsm.shrink(keepPages);
+        FileChannel meta = metaFiles.get(f);
+        if (meta != null && meta.size() > FreeSpaceMap.META_HEADER + (keepPages + 7L) / 8) {
+            meta.truncate(FreeSpaceMap.META_HEADER + (keepPages + 7L) / 8);
+        }
+        BitSet pending = dirtyMeta.get(f);
+        if (pending != null) pending.clear((keepPages + 7) / 8, Integer.MAX_VALUE); // octets retirés du fichier
+        updateHasFree(f, fsm);
+        // le fichier peut de nouveau grandir : il redevient candidat à l'extension dans sa bande
+        if (f < config.getDm_maxfilecount()) {
+            int s = f % stripes;
+            if (f < appendFile[s]) appendFile[s] = f;
+        }
+        return old - keepPages;
     }
 
     /**
      * Retourne le nombre actuel de pages stockées dans le fichier Data{fileIdx}.bin
      */
     public int getPageCount(int fileIdx) throws IOException {
-        Path p = bindataDir.resolve("Data" + fileIdx + ".bin");
+        Path p = dataDir(fileIdx).resolve("Data" + fileIdx + ".bin");
         if (!Files.exists(p)) return 0;
-        long len = Files.size(p);
+        long len;
+        PageStore store = openFiles.get(fileIdx);
+        if (compressed && store != null && store.isOpen()) {
+            len = store.size(); // taille logique
+        } else if (compressed) {
+            // fichier fermé : nombre d'entrées de DataN.idx
+            Path idx = CompressedPageStore.indexPath(p);
+            long entries = Files.exists(idx) ? Math.max(0, Files.size(idx) - CompressedPageStore.IDX_HEADER) / CompressedPageStore.ENTRY_SIZE : 0;
+            len = entries * config.getPagesize();
+        } else {
+            len = Files.size(p);
+        }
         return (int) (len / config.getPagesize());
     }
 
@@ -0,0 +1,197 @@
+import java.util.BitSet;
+
+/**
+ * Carte d'espace libre d'un fichier DataN.bin.
+ *
+ * Les pages libres sont indexées par une bitmap hiérarchique à trois niveaux :
+ * - niveau 0 : bit i = la page i est libre ;
+ * - niveau 1 : bit w = le mot w du niveau 0 (pages 64w..64w+63) contient au moins une page libre ;
+ * - niveau 2 : bit v = le mot v du niveau 1 contient au moins un bit à 1.
+ * Trouver la première page libre coûte donc trois nextSetBit qui s'arrêtent chacun dans leur
+ * premier mot (le niveau 2 ne fait que pageCount/4096 = pageCount/2^12 bits), quel que soit
+ * l'état de fragmentation.
+ * Un compteur de pages libres permet au DiskManager de savoir en O(1) si le fichier a de la place.
+ *
+ * Non thread-safe : les appels sont sérialisés par le DiskManager.
+ *
+ * Format du fichier DataN.meta : en-tête META_HEADER (magic "FSM1" sur 4 octets + 4 octets réservés)
+ * puis la bitmap des pages utilisées, bit i = octet META_HEADER + i/8, bit de poids i%8
+ * (même ordre que BitSet.toByteArray). Les octets modifiés sont réécrits en place avant la
+ * prochaine écriture de page, au Sync ou au Finish (cf. DiskManager) ; les octets au-delà de la
+ * fin du fichier valent 0 (pages libres).
+ */
+public class FreeSpaceMap {
+    private static final int WORD_SHIFT = 6; // 64 bits par mot
+    public static final int META_MAGIC = 0x46534D31; // "FSM1"
+    public static final int META_HEADER = 8;
+
+    private final BitSet free = new BitSet();
+    private final BitSet level1 = new BitSet();
+    private final BitSet level2 = new BitSet();
+    private int pageCount = 0;
+    private int freeCount = 0;
+
+    public FreeSpaceMap() {
+    }
+
+    /**
+     * Construit la carte d'un fichier de pageCount pages à partir de la bitmap des pages utilisées
+     */
+    public FreeSpaceMap(BitSet used, int pageCount) {
+        grow(pageCount);
+        for (int i = used.nextSetBit(0); i >= 0 && i < pageCount; i = used.nextSetBit(i + 1)) {
+            markUsed(i);
+        }
+    }
+
+    /**
+     * Reconstruit la carte d'un fichier de pageCount pages depuis le contenu d'un fichier .meta.
+     * Format incrémental (en-tête FSM1) : la bitmap fait foi, les pages non couvertes sont libres.
+     * Ancien format (bitmap brute réécrite au Finish) : les pages non couvertes sont supposées utilisées.
+     */
+    public static FreeSpaceMap fromMeta(byte[] meta, int pageCount) {
+        if (isIncrementalMeta(meta)) {
+            BitSet used = BitSet.valueOf(java.util.Arrays.copyOfRange(meta, META_HEADER, meta.length));
+            return new FreeSpaceMap(used, pageCount);
+        }
+        BitSet bs = BitSet.valueOf(meta);
+        if (bs.length() < pageCount) bs.set(bs.length(), pageCount);
+        return new FreeSpaceMap(bs, pageCount);
+    }
+
+    public static boolean isIncrementalMeta(byte[] meta) {
+        return meta.length >= META_HEADER && java.nio.ByteBuffer.wrap(meta).getInt(0) == META_MAGIC;
+    }
+
+    /**
+     * Contenu complet d'un fichier .meta au format incrémental
+     */
+    public byte[] toMeta() {
+        byte[] bits = toUsedBitSet().toByteArray();
+        byte[] meta = new byte[META_HEADER + bits.length];
+        java.nio.ByteBuffer.wrap(meta).putInt(0, META_MAGIC);
+        System.arraycopy(bits, 0, meta, META_HEADER, bits.length);
+        return meta;
+    }
+
+    /**
+     * Octet byteIdx de la bitmap des pages utilisées (pages 8*byteIdx .. 8*byteIdx+7)
+     */
+    public byte usedByte(int byteIdx) {
+        int b = 0;
+        for (int k = 0; k < 8; k++) {
+            if (isUsed(byteIdx * 8 + k)) b |= 1 << k;
+        }
+        return (byte) b;
+    }
+
+    /**
+     * Alloue la première page libre (plus petit index) et la marque utilisée.
+     * @return l'index de la page, ou -1 si le fichier est plein
+     */
+    public int allocate() {
+        int page = firstFree();
+        if (page >= 0) markUsed(page);
+        return page;
+    }
+
+    /**
+     * Première page libre (plus petit index) sans la marquer, -1 si le fichier est plein
+     */
+    public int firstFree() {
+        if (freeCount == 0) return -1;
+        int v = level2.nextSetBit(0);
+        int w = level1.nextSetBit(v << WORD_SHIFT);
+        return free.nextSetBit(w << WORD_SHIFT);
+    }
+
+    /**
+     * Ajoute des pages libres en fin de fichier jusqu'à newPageCount pages
+     */
+    public void grow(int newPageCount) {
+        if (newPageCount <= pageCount) return;
+        int old = pageCount;
+        pageCount = newPageCount;
+        free.set(old, newPageCount);
+        freeCount += newPageCount - old;
+        for (int w = old >> WORD_SHIFT; w <= (newPageCount - 1) >> WORD_SHIFT; w++) refresh(w);
+    }
+
+    /**
+     * Retire les pages à partir de newPageCount (fichier tronqué) ; elles doivent être libres
+     */
+    public void shrink(int newPageCount) {
+        if (newPageCount >= pageCount) return;
+        if (newPageCount < getUsedPrefixCount()) throw new IllegalArgumentException("pages utilisées au-delà de " + newPageCount);
+        int old = pageCount;
+        pageCount = newPageCount;
+        free.clear(newPageCount, old);
+        freeCount -= old - newPageCount;
+        for (int w = newPageCount >> WORD_SHIFT; w <= (old - 1) >> WORD_SHIFT; w++) refresh(w);
+    }
+
+    /**
+     * Marque une page utilisée ; une page au-delà de la fin agrandit la carte
+     * @return true si l'état de la page a changé
+     */
+    public boolean markUsed(int page) {
+        if (page >= pageCount) grow(page + 1);
+        if (!free.get(page)) return false;
+        free.clear(page);
+        freeCount--;
+        refresh(page >> WORD_SHIFT);
+        return true;
+    }
+
+    /**
+     * Marque une page libre (ignoré si la page est hors du fichier)
+     * @return true si l'état de la page a changé
+     */
+    public boolean markFree(int page) {
+        if (page < 0 || page >= pageCount || free.get(page)) return false;
+        free.set(page);
+        freeCount++;
+        refresh(page >> WORD_SHIFT);
+        return true;
+    }
+
+    public boolean isUsed(int page) {
+        return page < pageCount && !free.get(page);
+    }
+
+    public int getPageCount() { return pageCount; }
+
+    /**
+     * Nombre de pages jusqu'à la dernière page utilisée incluse (0 si aucune page utilisée)
+     */
+    public int getUsedPrefixCount() {
+        if (pageCount == 0) return 0;
+        return free.previousClearBit(pageCount - 1) + 1;
+    }
+
+    public int getFreeCount() { return freeCount; }
+
+    /**
+     * Bitmap des pages utilisées (format des fichiers .meta)
+     */
+    public BitSet toUsedBitSet() {
+        BitSet used = new BitSet(pageCount);
+        used.set(0, pageCount);
+        used.andNot(free);
+        return used;
+    }
+
+    // Recalcule les bits de résumé couvrant le mot w du niveau 0
+    private void refresh(int w) {
+        boolean any = hasSetBitInWord(free, w);
+        if (any == level1.get(w)) return;
+        level1.set(w, any);
+        int v = w >> WORD_SHIFT;
+        level2.set(v, hasSetBitInWord(level1, v));
+    }
+
+    private static boolean hasSetBitInWord(BitSet bs, int word) {
+        int next = bs.nextSetBit(word << WORD_SHIFT);
+        return next >= 0 && (next >> WORD_SHIFT) == word;
+    }
+}
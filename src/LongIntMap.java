@@ -0,0 +1,122 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Table de hachage long -> int (valeurs >= 0) à adressage ouvert, sans objet par entrée : table
+ * des pages du BufferManager, indexée par PageId.pack(fileIdx, pageIdx).
+ *
+ * Lectures sans verrou ; écritures sérialisées (synchronized). Un emplacement ne passe que par
+ * VIDE -> clé -> SUPPRIMÉ (jamais réutilisé avant un rehash, qui publie une nouvelle table) : un
+ * lecteur qui voit une clé lit donc toujours la valeur écrite avec elle. Un lecteur concurrent d'une
+ * écriture peut voir l'état d'avant ou d'après ; les appelants revérifient la page de la frame.
+ */
+final class LongIntMap {
+    private static final long EMPTY = Long.MIN_VALUE;       // fileIdx négatif : jamais une page
+    private static final long DELETED = Long.MIN_VALUE + 1;
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final class Table {
+        final long[] keys;
+        final int[] vals;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            vals = new int[capacity];
+            mask = capacity - 1;
+            java.util.Arrays.fill(keys, EMPTY);
+        }
+    }
+
+    private volatile Table table;
+    private int size;    // entrées présentes (sous le verrou)
+    private int used;    // emplacements non vides, supprimés compris (sous le verrou)
+
+    LongIntMap(int expected) {
+        table = new Table(capacityFor(expected));
+    }
+
+    // Puissance de 2 avec un taux de remplissage d'au plus 1/2
+    private static int capacityFor(int n) {
+        int c = 16;
+        while (c < 2 * n && c < (1 << 30)) c <<= 1;
+        return c;
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /** Valeur associée à key, -1 si absente */
+    int get(long key) {
+        Table t = table;
+        for (int i = slot(key, t.mask); ; i = (i + 1) & t.mask) {
+            long k = (long) KEYS.getAcquire(t.keys, i);
+            if (k == key) return (int) VALS.getAcquire(t.vals, i);
+            if (k == EMPTY) return -1;
+        }
+    }
+
+    boolean containsKey(long key) {
+        return get(key) >= 0;
+    }
+
+    /** Associe value à key si key est absente ; retourne la valeur existante, ou -1 si ajoutée */
+    synchronized int putIfAbsent(long key, int value) {
+        Table t = table;
+        int i = slot(key, t.mask);
+        for (; ; i = (i + 1) & t.mask) {
+            long k = t.keys[i];
+            if (k == key) return t.vals[i];
+            if (k == EMPTY) break;
+        }
+        if (2 * (used + 1) > t.keys.length) {
+            t = rehash(size + 1);
+            i = slot(key, t.mask);
+            while (t.keys[i] != EMPTY) i = (i + 1) & t.mask;
+        }
+        VALS.setRelease(t.vals, i, value);
+        KEYS.setRelease(t.keys, i, key); // publie la valeur avec la clé
+        size++;
+        used++;
+        return -1;
+    }
+
+    /** Retire key seulement si elle est associée à value */
+    synchronized boolean remove(long key, int value) {
+        Table t = table;
+        for (int i = slot(key, t.mask); ; i = (i + 1) & t.mask) {
+            long k = t.keys[i];
+            if (k == key) {
+                if (t.vals[i] != value) return false;
+                KEYS.setRelease(t.keys, i, DELETED);
+                size--;
+                return true;
+            }
+            if (k == EMPTY) return false;
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Recopie les entrées présentes dans une nouvelle table (sans emplacements supprimés) et la publie
+    private Table rehash(int needed) {
+        Table old = table;
+        Table t = new Table(capacityFor(Math.max(needed, old.keys.length / 4)));
+        for (int j = 0; j < old.keys.length; j++) {
+            long k = old.keys[j];
+            if (k == EMPTY || k == DELETED) continue;
+            int i = slot(k, t.mask);
+            while (t.keys[i] != EMPTY) i = (i + 1) & t.mask;
+            t.keys[i] = k;
+            t.vals[i] = old.vals[j];
+        }
+        used = size;
+        table = t; // publication volatile : les lecteurs voient la table remplie
+        return t;
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+
+/**
+ * LRU (ou MRU) : liste doublement chaînée des frames chargées, de la moins récemment placée
+ * (tête) à la plus récente (queue), codée dans deux tableaux d'index (pas d'objet par nœud).
+ *
+ * Un accès en cache ne touche pas à la liste et ne prend aucun verrou : il note dans stamp[frame]
+ * l'époque courante (une écriture seulement si la frame n'a pas déjà été vue à cette époque).
+ * L'époque avance à chaque chargement et à chaque recherche de victime ; linkedAt[frame] est
+ * l'époque à laquelle la frame a été placée en queue. Une frame dont stamp > linkedAt a donc été
+ * relue depuis : la recherche LRU, qui part de la tête, la replace alors en queue au passage
+ * (promotion paresseuse, O(1) amorti par accès) et s'arrête sur la première frame éjectable non
+ * relue. L'ordre est celui du LRU à la granularité de l'époque près. En MRU, la recherche part
+ * de la queue avec la même promotion paresseuse : une frame relue rencontrée est replacée en
+ * queue et choisie si elle est éjectable, sinon la première frame éjectable l'est. Un accès à
+ * une frame éloignée de la queue n'est donc vu qu'au passage de la recherche : en MRU, l'ordre
+ * est surtout celui des chargements, ce qui suffit aux parcours séquentiels qu'elle sert.
+ */
+class LruPolicy implements ReplacementPolicy {
+    private static final int MAX_SKIP = 64; // frames écartées au plus par passage de fill
+    private final int[] prev;
+    private final int[] next;
+    private final boolean[] linked;
+    private final long[] linkedAt;        // époque du dernier placement en queue (sous this)
+    private final AtomicLongArray stamp;  // époque du dernier accès en cache (sans verrou)
+    private final int head; // sentinelle : next[head] = plus ancienne, prev[head] = plus récente
+    private final boolean mru;
+    private volatile long epoch = 1;      // avancée sous this, lue sans verrou par onAccess
+
+    LruPolicy(int frames, boolean mru) {
+        this.prev = new int[frames + 1];
+        this.next = new int[frames + 1];
+        this.linked = new boolean[frames + 1];
+        this.linkedAt = new long[frames];
+        this.stamp = new AtomicLongArray(frames);
+        this.head = frames;
+        this.mru = mru;
+        prev[head] = head;
+        next[head] = head;
+    }
+
+    @Override
+    public synchronized void onLoad(int frame, PageId pageId) {
+        epoch++; // avant le placement : l'accès qui suit le chargement n'est pas une relecture
+        moveToTail(frame);
+    }
+
+    @Override
+    public void onAccess(int frame) {
+        long e = epoch;
+        if (stamp.get(frame) < e) stamp.lazySet(frame, e);
+    }
+
+    @Override
+    public synchronized void onRemove(int frame) {
+        unlink(frame);
+    }
+
+    @Override
+    public synchronized int victim(IntPredicate evictable) {
+        try {
+            return mru ? mostRecent(evictable) : leastRecent(evictable);
+        } finally {
+            epoch++;
+        }
+    }
+
+    // Depuis la tête ; les frames relues sont replacées en queue (avec l'époque courante, elles ne
+    // sont plus vues comme relues quand la recherche les retrouve)
+    private int leastRecent(IntPredicate evictable) {
+        int i = next[head];
+        while (i != head) {
+            int n = next[i];
+            if (accessed(i)) {
+                moveToTail(i);
+                if (n == head) n = i; // c'était déjà la dernière : la revoir telle quelle
+            } else if (evictable.test(i)) {
+                return i;
+            }
+            i = n;
+        }
+        return -1;
+    }
+
+    // Depuis la queue ; les frames relues rencontrées sont replacées en queue (elles sont derrière
+    // la recherche, qui ne les revoit pas)
+    private int mostRecent(IntPredicate evictable) {
+        int i = prev[head];
+        while (i != head) {
+            int p = prev[i];
+            if (accessed(i)) moveToTail(i);
+            if (evictable.test(i)) return i;
+            i = p;
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized int upcoming(int[] out, IntPredicate evictable) {
+        return fill(out, 0, evictable);
+    }
+
+    // Complète out à partir de count dans l'ordre d'éjection prévu ; retourne le nouveau nombre.
+    // LRU : les frames non relues depuis la tête, puis les relues ; MRU : depuis la queue. Chaque
+    // passage s'arrête après MAX_SKIP frames écartées : la liste n'est pas parcourue en entier sous
+    // le verrou, quitte à rendre moins de candidates que demandé
+    synchronized int fill(int[] out, int count, IntPredicate evictable) {
+        for (int pass = mru ? 1 : 0; pass <= 1 && count < out.length; pass++) {
+            int skipped = 0;
+            for (int i = mru ? prev[head] : next[head]; i != head && count < out.length && skipped < MAX_SKIP;
+                    i = mru ? prev[i] : next[i]) {
+                if ((mru || accessed(i) == (pass == 1)) && evictable.test(i)) out[count++] = i;
+                else skipped++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String name() { return mru ? "MRU" : "LRU"; }
+
+    private boolean accessed(int frame) {
+        return stamp.get(frame) > linkedAt[frame];
+    }
+
+    private void moveToTail(int frame) {
+        unlink(frame);
+        int last = prev[head];
+        prev[frame] = last;
+        next[frame] = head;
+        next[last] = frame;
+        prev[head] = frame;
+        linked[frame] = true;
+        linkedAt[frame] = epoch;
+    }
+
+    private void unlink(int frame) {
+        if (!linked[frame]) return;
+        next[prev[frame]] = next[frame];
+        prev[next[frame]] = prev[frame];
+        linked[frame] = false;
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * PageStore en mode dm_iomode=MMAP : le fichier est accédé via des segments MappedByteBuffer
+ * de taille fixe (dm_mmapchunk, multiple de pagesize pour qu'une page ne chevauche jamais deux
+ * segments). ReadPage/WritePage deviennent de simples copies mémoire, sans appel système.
+ *
+ * Le mapping ne dépasse jamais la taille du fichier (un mapping READ_WRITE plus grand étendrait
+ * le fichier) : quand le fichier grandit (AllocPage), le dernier segment est re-mappé à la demande.
+ */
+class MappedPageStore implements PageStore {
+    private final FileChannel ch;
+    private final long chunk;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    MappedPageStore(Path p, long chunkSize, int pagesize) throws IOException {
+        this.ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long c = Math.max(pagesize, chunkSize - (chunkSize % pagesize));
+        this.chunk = Math.min(c, Integer.MAX_VALUE - (Integer.MAX_VALUE % pagesize));
+    }
+
+    /**
+     * Retourne le segment couvrant [offset, offset+len) ou null si cette plage dépasse la fin du fichier.
+     */
+    private MappedByteBuffer segmentFor(long offset, int len) throws IOException {
+        int idx = (int) (offset / chunk);
+        int end = (int) (offset % chunk) + len;
+        MappedByteBuffer[] segs = segments;
+        if (idx < segs.length && segs[idx] != null && segs[idx].capacity() >= end) return segs[idx];
+        return remap(idx, end);
+    }
+
+    private synchronized MappedByteBuffer remap(int idx, int end) throws IOException {
+        MappedByteBuffer[] segs = segments;
+        if (idx < segs.length && segs[idx] != null && segs[idx].capacity() >= end) return segs[idx];
+        long start = idx * chunk;
+        long mapped = Math.min(chunk, ch.size() - start);
+        if (mapped < end) return null;
+        if (idx >= segs.length) segs = Arrays.copyOf(segs, idx + 1);
+        else segs = segs.clone();
+        segs[idx] = ch.map(FileChannel.MapMode.READ_WRITE, start, mapped);
+        segments = segs;
+        return segs[idx];
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer dst) throws IOException {
+        int len = dst.remaining();
+        MappedByteBuffer seg = segmentFor(offset, len);
+        if (seg == null) {
+            // au-delà de la fin du fichier : page jamais écrite
+            while (dst.hasRemaining()) dst.put((byte) 0);
+            return;
+        }
+        ByteBuffer view = seg.duplicate();
+        int pos = (int) (offset % chunk);
+        view.limit(pos + len).position(pos);
+        dst.put(view);
+    }
+
+    @Override
+    public void write(long offset, ByteBuffer src) throws IOException {
+        int len = src.remaining();
+        MappedByteBuffer seg = segmentFor(offset, len);
+        if (seg == null) {
+            // extension du fichier : écriture via le canal, le segment sera re-mappé au prochain accès
+            long pos = offset;
+            while (src.hasRemaining()) pos += ch.write(src, pos);
+            return;
+        }
+        ByteBuffer view = seg.duplicate();
+        view.position((int) (offset % chunk));
+        view.put(src);
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer[] dsts) throws IOException {
+        // déjà une copie mémoire par page : pas d'appel système à regrouper
+        long pos = offset;
+        for (ByteBuffer dst : dsts) {
+            int len = dst.remaining();
+            read(pos, dst);
+            pos += len;
+        }
+    }
+
+    @Override
+    public void write(long offset, ByteBuffer[] srcs) throws IOException {
+        long pos = offset;
+        for (ByteBuffer src : srcs) {
+            int len = src.remaining();
+            write(pos, src);
+            pos += len;
+        }
+    }
+
+    /**
+     * Vue en lecture seule (sans copie) sur [offset, offset+len) du mapping, ou null si hors fichier.
+     */
+    ByteBuffer slice(long offset, int len) throws IOException {
+        MappedByteBuffer seg = segmentFor(offset, len);
+        if (seg == null) return null;
+        ByteBuffer view = seg.duplicate();
+        int pos = (int) (offset % chunk);
+        view.limit(pos + len).position(pos);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public long size() throws IOException { return ch.size(); }
+
+    @Override
+    public synchronized void truncate(long size) throws IOException {
+        // les segments couvrant la partie supprimée ne doivent plus être accédés
+        segments = new MappedByteBuffer[0];
+        ch.truncate(size);
+    }
+
+    @Override
+    public void force() throws IOException {
+        for (MappedByteBuffer seg : segments) {
+            if (seg != null) seg.force();
+        }
+        ch.force(true);
+    }
+
+    @Override
+    public boolean isOpen() { return ch.isOpen(); }
+
+    @Override
+    public void close() throws IOException {
+        segments = new MappedByteBuffer[0];
+        ch.close();
+    }
+}
@@ -10,6 +10,9 @@ public class MiniSGBDR {
     private DBConfig config;
     private Scanner scanner;
     private boolean running;
+    private DiskManager diskManager;
+    private BufferPools bufferPools;
+    private DBManager dbManager;
     
     /**
      * Constructeur du MiniSGBDR
@@ -63,6 +66,20 @@ public class MiniSGBDR {
      * Boucle principale de l'application
      */
     public void run() {
+        try {
+            diskManager = new DiskManager(config);
+            diskManager.Init();
+            bufferPools = new BufferPools(config, diskManager);
+            dbManager = new DBManager(config);
+            dbManager.loadState();
+            dbManager.attach(diskManager, bufferPools);
+        } catch (IOException e) {
+            System.err.println("Ouverture des données impossible : " + e.getMessage());
+            diskManager = null;
+            bufferPools = null;
+            dbManager = null;
+        }
+
         System.out.println("=== MiniSGBDR démarré ===");
         System.out.println("Tapez 'HELP' pour voir les commandes disponibles");
         System.out.println("Tapez 'EXIT' pour quitter l'application");
@@ -77,9 +94,27 @@ public class MiniSGBDR {
             }
         }
         
+        closeStorage();
         System.out.println("Au revoir !");
         scanner.close();
     }
+
+    /**
+     * Écrit les pages dirty et ferme les pools de buffers puis le DiskManager
+     */
+    private void closeStorage() {
+        if (diskManager == null) return;
+        try {
+            bufferPools.FlushBuffers();
+            bufferPools.Close();
+            diskManager.Finish();
+        } catch (IOException e) {
+            System.err.println("Erreur à la fermeture des données : " + e.getMessage());
+        }
+        diskManager = null;
+        bufferPools = null;
+        dbManager = null;
+    }
     
     /**
      * Traite une commande utilisateur
@@ -110,6 +145,18 @@ public class MiniSGBDR {
                 handleDebug(parts);
                 break;
                 
+            case "STATS":
+                handleStats(parts);
+                break;
+                
+            case "CHECKPOINT":
+                handleCheckpoint();
+                break;
+                
+            case "BIND":
+                handleBind(parts);
+                break;
+                
             default:
                 System.out.println("Commande inconnue : " + command);
                 System.out.println("Tapez 'HELP' pour voir les commandes disponibles");
@@ -135,6 +182,9 @@ public class MiniSGBDR {
         System.out.println("STATUS                  - Afficher le statut du système");
         System.out.println("CONFIG                  - Afficher la configuration actuelle");
         System.out.println("DEBUG INFO              - Afficher les informations de debug");
+        System.out.println("STATS BUFFER [RESET]    - Statistiques des pools de buffers (ou remise à zéro)");
+        System.out.println("CHECKPOINT              - Écrire les pages modifiées sans vider les pools");
+        System.out.println("BIND TABLE t POOL p     - Lier la table t au pool de buffers p (bm_pools)");
         System.out.println();
         System.out.println("=== Commandes à venir dans les prochains TPs ===");
         System.out.println("CREATE TABLE ...        - Créer une table");
@@ -210,6 +260,76 @@ public class MiniSGBDR {
         }
     }
     
+    /**
+     * Gère la commande STATS BUFFER [RESET]
+     * @param parts Les parties de la commande
+     */
+    private void handleStats(String[] parts) {
+        if (parts.length < 2 || !parts[1].equalsIgnoreCase("BUFFER")) {
+            System.out.println("Usage : STATS BUFFER [RESET]");
+            return;
+        }
+        if (bufferPools == null) {
+            System.out.println("Pool de buffers indisponible");
+            return;
+        }
+        boolean reset = parts.length > 2 && parts[2].equalsIgnoreCase("RESET");
+        for (String name : bufferPools.names()) {
+            BufferManager bm = bufferPools.get(name);
+            if (reset) {
+                bm.getStats().reset();
+                continue;
+            }
+            System.out.println("=== Pool de buffers " + name + " ===");
+            System.out.println("Frames : " + bm.getBufferCount() + " x " + config.getPagesize()
+                    + " octets, politique " + bm.getPolicy());
+            System.out.print(bm.getStats().report());
+            System.out.println();
+        }
+        if (reset) System.out.println("Statistiques des pools remises à zéro");
+    }
+    
+    /**
+     * Gère la commande CHECKPOINT : écrit les pages dirty de chaque pool, qui restent en cache
+     */
+    private void handleCheckpoint() {
+        if (bufferPools == null) {
+            System.out.println("Pool de buffers indisponible");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            int written = bufferPools.Checkpoint();
+            System.out.printf("Point de contrôle : %d pages écrites en %d ms%n", written, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            System.err.println("Erreur pendant le point de contrôle : " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Gère la commande BIND TABLE t POOL p : la liaison est enregistrée dans database.save
+     * @param parts Les parties de la commande
+     */
+    private void handleBind(String[] parts) {
+        if (parts.length != 5 || !parts[1].equalsIgnoreCase("TABLE") || !parts[3].equalsIgnoreCase("POOL")) {
+            System.out.println("Usage : BIND TABLE <table> POOL <pool>");
+            return;
+        }
+        if (dbManager == null) {
+            System.out.println("Pool de buffers indisponible");
+            return;
+        }
+        try {
+            dbManager.bindTable(parts[2], parts[4], bufferPools);
+            dbManager.saveState();
+            System.out.println("Table " + parts[2] + " liée au pool " + parts[4]);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Erreur pendant le changement de pool : " + e.getMessage());
+        }
+    }
+    
     /**
      * Gère la commande DEBUG INFO
      */
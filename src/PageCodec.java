@@ -0,0 +1,131 @@
+import java.io.IOException;
+
+/**
+ * Compresseur LZ77 rapide pour les pages (format de bloc inspiré de LZ4), sans dépendance externe.
+ *
+ * Une page compressée est une suite de séquences :
+ *   jeton (1 octet) : 4 bits de poids fort = nombre de littéraux, 4 bits de poids faible = longueur
+ *                     de la copie - MIN_MATCH ; la valeur 15 est prolongée par des octets 255... (< 255 final)
+ *   littéraux, puis offset de la copie sur 2 octets (little endian, 1..65535) et la copie elle-même.
+ * La dernière séquence n'a que des littéraux : le décodeur s'arrête quand la page est complète.
+ *
+ * Les pages des relations sont surtout faites de zéros (CHAR/VARCHAR complétés par '\0', slots
+ * inutilisés) : une page vide tient en quelques octets.
+ */
+final class PageCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_BITS = 12;
+
+    private static final ThreadLocal<int[]> TABLES = ThreadLocal.withInitial(() -> new int[1 << HASH_BITS]);
+
+    private PageCodec() {}
+
+    /**
+     * Compresse src[off, off+len) dans dst à partir de 0.
+     * Retourne la taille produite, ou -1 si elle dépasserait dst.length (la page est alors
+     * conservée telle quelle par l'appelant).
+     */
+    static int compress(byte[] src, int off, int len, byte[] dst) {
+        int[] table = TABLES.get();
+        java.util.Arrays.fill(table, 0); // 0 = vide, sinon position + 1
+        int end = off + len;
+        int anchor = off;
+        int ip = off;
+        int op = 0;
+        while (ip + MIN_MATCH <= end) {
+            int seq = readInt(src, ip);
+            int h = (seq * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[h] - 1;
+            table[h] = ip + 1;
+            if (ref < off || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                ip++;
+                continue;
+            }
+            int mlen = MIN_MATCH;
+            while (ip + mlen < end && src[ref + mlen] == src[ip + mlen]) mlen++;
+            op = writeSequence(src, anchor, ip - anchor, ip - ref, mlen, dst, op);
+            if (op < 0) return -1;
+            ip += mlen;
+            anchor = ip;
+        }
+        return writeSequence(src, anchor, end - anchor, 0, 0, dst, op);
+    }
+
+    /**
+     * Décompresse src[off, off+len) dans dst[dstOff, dstOff+dstLen) ; le résultat doit remplir
+     * exactement dstLen octets.
+     */
+    static void decompress(byte[] src, int off, int len, byte[] dst, int dstOff, int dstLen) throws IOException {
+        int ip = off;
+        int end = off + len;
+        int op = dstOff;
+        int dstEnd = dstOff + dstLen;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+                int lit = token >>> 4;
+                if (lit == 15) {
+                    int b;
+                    do { b = src[ip++] & 0xFF; lit += b; } while (b == 255);
+                }
+                if (lit > end - ip || lit > dstEnd - op) throw corrupt();
+                System.arraycopy(src, ip, dst, op, lit);
+                ip += lit;
+                op += lit;
+                if (op == dstEnd) {
+                    if (ip != end) throw corrupt();
+                    return;
+                }
+                int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int mlen = token & 0x0F;
+                if (mlen == 15) {
+                    int b;
+                    do { b = src[ip++] & 0xFF; mlen += b; } while (b == 255);
+                }
+                mlen += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < dstOff || mlen > dstEnd - op) throw corrupt();
+                // copie octet par octet : la source peut chevaucher la destination (offset < mlen)
+                for (int k = 0; k < mlen; k++) dst[op + k] = dst[ref + k];
+                op += mlen;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw corrupt();
+        }
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Page compressée corrompue");
+    }
+
+    // Écrit une séquence (littéraux + copie éventuelle) ; retourne la nouvelle position ou -1 si dst est trop petit
+    private static int writeSequence(byte[] src, int litOff, int lit, int offset, int mlen, byte[] dst, int op) {
+        int mcode = mlen == 0 ? 0 : mlen - MIN_MATCH;
+        int need = 1 + lit + lit / 255 + 1 + (mlen == 0 ? 0 : 2 + mcode / 255 + 1);
+        if (op + need > dst.length) return -1;
+        dst[op++] = (byte) ((Math.min(lit, 15) << 4) | Math.min(mcode, 15));
+        if (lit >= 15) op = writeLength(dst, op, lit - 15);
+        System.arraycopy(src, litOff, dst, op, lit);
+        op += lit;
+        if (mlen == 0) return op;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        if (mcode >= 15) op = writeLength(dst, op, mcode - 15);
+        return op;
+    }
+
+    private static int writeLength(byte[] dst, int op, int n) {
+        while (n >= 255) {
+            dst[op++] = (byte) 255;
+            n -= 255;
+        }
+        dst[op++] = (byte) n;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,51 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Page épinglée avec son latch de contenu, à utiliser dans un try-with-resources :
+ *
+ *   try (PageHandle h = bm.GetPageShared(pid)) { ... h.buffer().getInt(0) ... }
+ *
+ * - partagé (GetPageShared) : plusieurs lecteurs à la fois, vue en lecture seule, jamais dirty ;
+ * - exclusif (GetPageExclusive) : un seul détenteur, aucun lecteur par handle en même temps ;
+ *   la page est marquée dirty à la fermeture.
+ * close() relâche le latch puis dépingle la page ; un second close() est sans effet.
+ *
+ * Le latch est celui d'un ReentrantReadWriteLock : le handle doit être fermé par le thread qui
+ * l'a obtenu. Les accès par GetPage/FreePage ne prennent pas de latch.
+ */
+public final class PageHandle implements AutoCloseable {
+    private final BufferManager bm;
+    private final long pageKey;
+    final BufferManager.Frame frame;
+    private final ByteBuffer buffer;
+    private final boolean exclusive;
+    private boolean closed = false;
+
+    PageHandle(BufferManager bm, long pageKey, BufferManager.Frame frame, ByteBuffer buffer, boolean exclusive) {
+        this.bm = bm;
+        this.pageKey = pageKey;
+        this.frame = frame;
+        this.buffer = buffer;
+        this.exclusive = exclusive;
+    }
+
+    public PageId getPageId() { return PageId.fromLong(pageKey); }
+
+    /** Identifiant PageId.pack(fileIdx, pageIdx) de la page */
+    public long getPageKey() { return pageKey; }
+
+    /** Contenu de la page (accès absolus, position 0, limite pagesize) ; en lecture seule si partagé */
+    public ByteBuffer buffer() {
+        if (closed) throw new IllegalStateException("Handle fermé : " + getPageId());
+        return buffer;
+    }
+
+    public boolean isExclusive() { return exclusive; }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        bm.release(this);
+    }
+}
@@ -18,6 +18,30 @@ public class PageId {
         return pageIdx;
     }
 
+    /**
+     * Identifiant sur 64 bits : fileIdx dans les 32 bits de poids fort, pageIdx dans les 32 bits de
+     * poids faible (clé de la table des pages, GetPage(long)/FreePage(long, ..)).
+     */
+    public static long pack(int fileIdx, int pageIdx) {
+        return ((long) fileIdx << 32) | (pageIdx & 0xFFFFFFFFL);
+    }
+
+    public static int fileIdx(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int pageIdx(long key) {
+        return (int) key;
+    }
+
+    public static PageId fromLong(long key) {
+        return new PageId(fileIdx(key), pageIdx(key));
+    }
+
+    public long toLong() {
+        return pack(fileIdx, pageIdx);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,53 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Accès bas niveau au contenu d'un fichier DataN.bin pour le DiskManager.
+ * Une implémentation par mode d'E/S (dm_iomode) : FileChannel positionnel ou fichier mappé.
+ * Les offsets sont en octets ; les implémentations doivent supporter des appels concurrents
+ * sur des plages disjointes.
+ */
+public interface PageStore {
+    /**
+     * Lit dst.remaining() octets à partir de offset. Les octets situés au-delà de la fin
+     * du fichier sont remplis par zéro.
+     */
+    void read(long offset, ByteBuffer dst) throws IOException;
+
+    /**
+     * Écrit tout le contenu restant de src à partir de offset (le fichier grandit si besoin).
+     */
+    void write(long offset, ByteBuffer src) throws IOException;
+
+    /**
+     * Lecture vectorielle (scatter) : remplit les buffers dans l'ordre à partir de offset,
+     * en une seule requête d'E/S quand le mode le permet. Zéros au-delà de la fin du fichier.
+     */
+    void read(long offset, ByteBuffer[] dsts) throws IOException;
+
+    /**
+     * Écriture vectorielle (gather) du contenu des buffers, contigus à partir de offset
+     */
+    void write(long offset, ByteBuffer[] srcs) throws IOException;
+
+    /**
+     * Indique que la plage [offset, offset+length) ne contient plus de données utiles (pages
+     * désallouées) : l'implémentation peut rendre l'espace au système, la relire donne des zéros.
+     * Java n'expose pas fallocate(PUNCH_HOLE) : par défaut rien n'est fait.
+     */
+    default void discard(long offset, long length) throws IOException {
+    }
+
+    /** Taille actuelle du fichier en octets */
+    long size() throws IOException;
+
+    /** Réduit le fichier à size octets (les octets au-delà sont perdus) */
+    void truncate(long size) throws IOException;
+
+    /** Force l'écriture sur le support physique */
+    void force() throws IOException;
+
+    boolean isOpen();
+
+    void close() throws IOException;
+}
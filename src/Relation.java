@@ -1,6 +1,9 @@
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Relation models a table schema and provides methods to serialize/deserialize
@@ -20,6 +23,8 @@ public class Relation {
     private int nbSlotsPerDataPage;        // Nombre de slots sur chaque page de données
     private DiskManager diskManager;       // Référence vers DiskManager
     private BufferManager bufferManager;   // Référence vers BufferManager
+    private BufferStats.Counters bufferStats; // compteurs de la relation dans bufferManager (créés au premier accès)
+    private String poolName = BufferPools.DEFAULT; // pool de buffers de la relation (DBManager.bindTable)
 
     // Constructeur enrichi
     public Relation(String name, List<ColumnInfo> columns, 
@@ -49,7 +54,12 @@ public class Relation {
     public DiskManager getDiskManager() { return diskManager; }
     public void setDiskManager(DiskManager dm) { this.diskManager = dm; }
     public BufferManager getBufferManager() { return bufferManager; }
-    public void setBufferManager(BufferManager bm) { this.bufferManager = bm; }
+    public String getPoolName() { return poolName; }
+    public void setPoolName(String pool) { this.poolName = (pool == null || pool.isEmpty()) ? BufferPools.DEFAULT : pool.toLowerCase(); }
+    public void setBufferManager(BufferManager bm) {
+        this.bufferManager = bm;
+        this.bufferStats = null;
+    }
 
     // --- FONCTIONNALITES d'origine ---
     public String getName() { return name; }
@@ -62,6 +72,26 @@ public class Relation {
         return total;
     }
 
+    // Accès aux pages comptés dans les statistiques de la relation (BufferManager.getStats)
+    private PageHandle shared(PageId pid, ScanRing ring) throws IOException {
+        return bufferManager.GetPageShared(pid, ring, bufferStats());
+    }
+
+    private PageHandle exclusive(PageId pid) throws IOException {
+        return bufferManager.GetPageExclusive(pid, bufferStats());
+    }
+
+    // Variante par identifiant PageId.pack : le parcours des chaînages n'alloue pas de PageId
+    private PageHandle shared(long pageKey, ScanRing ring) throws IOException {
+        return bufferManager.GetPageShared(pageKey, ring, bufferStats());
+    }
+
+    private BufferStats.Counters bufferStats() {
+        BufferStats.Counters c = bufferStats;
+        if (c == null) bufferStats = c = bufferManager.getStats().relation(name);
+        return c;
+    }
+
     private static int parseInt(String s) {
         return Integer.parseInt(s.trim());
     }
@@ -174,54 +204,44 @@ public class Relation {
         // 1. Alloue une nouvelle page via le DiskManager
         PageId newPageId = diskManager.AllocPage();
 
-        // 2. Initialise la nouvelle page (remplit la bytemap à zéro)
-        byte[] dataBuffer = bufferManager.GetPage(newPageId);
-        // La bytemap est sur les nbSlotsPerDataPage premiers octets
-        for (int i = 0; i < nbSlotsPerDataPage; i++) dataBuffer[i] = 0;
-
-        // 3. La page pointe vers rien dans la liste chainée au début (valeurs fictives pour next/prev page)
-        int base = nbSlotsPerDataPage;
-        // Ici, on réserve 2 PageId (next/prev) stockés sur 2*8 octets (chaque int=4, donc 2 entiers par PageId)
-        // Pour le chaînage de la liste "pages ayant de la place" : on met (-1,-1), de même pour "pleines"
-        for (int i = 0; i < 4; i++) { // nextPageId (fileIdx=-1, pageIdx=-1)
-            dataBuffer[base++] = (byte)0xFF;
-        }
-        for (int i = 0; i < 4; i++) { // prevPageId (fileIdx=-1, pageIdx=-1)
-            dataBuffer[base++] = (byte)0xFF;
-        }
+        // 2. Header Page puis nouvelle page en exclusif (toujours dans cet ordre) ; les deux sont
+        //    marquées dirty et libérées à la fin du bloc, même en cas d'exception
+        try (PageHandle header = exclusive(headerPageId);
+             PageHandle page = exclusive(newPageId)) {
+            ByteBuffer headerBuffer = header.buffer();
+            ByteBuffer dataBuffer = page.buffer();
+
+            // 3. Initialise la nouvelle page (remplit la bytemap à zéro)
+            // La bytemap est sur les nbSlotsPerDataPage premiers octets
+            for (int i = 0; i < nbSlotsPerDataPage; i++) dataBuffer.put(i, (byte) 0);
 
-        // 4. Libère la page, marque dirty
-        bufferManager.FreePage(newPageId, true);
-
-        // 5. Met à jour la liste des pages "ayant encore de la place" dans la Header Page
-        // Accède à la Header Page via BufferManager
-        byte[] headerBuffer = bufferManager.GetPage(headerPageId);
-
-        // Extrait PageId courant de la première page "ayant de la place"
-        int offset = 2 * 4; // Le premier PageId (pleines, 0-7), le deuxième est (avec place, 8-15)
-        int freeListFileIdx = ByteBuffer.wrap(headerBuffer, offset, 4).getInt();
-        int freeListPageIdx = ByteBuffer.wrap(headerBuffer, offset+4, 4).getInt();
-
-        // Si la liste était vide, pointe vers la nouvelle page
-        if (freeListFileIdx == -1 && freeListPageIdx == -1) {
-            ByteBuffer.wrap(headerBuffer, offset, 4).putInt(newPageId.getFileIdx());
-            ByteBuffer.wrap(headerBuffer, offset+4, 4).putInt(newPageId.getPageIdx());
-        } else {
-            // Sinon, chaîner la nouvelle page en tête de liste
-            // NouvellePage.next = ancien_tete ; HeaderPage = nouvellePage
-
-            // 1. nouvellePage.next = ancien_tete
-            byte[] newPageBuf = bufferManager.GetPage(newPageId);
-            ByteBuffer.wrap(newPageBuf, nbSlotsPerDataPage, 4).putInt(freeListFileIdx);     // next.fileIdx
-            ByteBuffer.wrap(newPageBuf, nbSlotsPerDataPage + 4, 4).putInt(freeListPageIdx); // next.pageIdx
-
-            // 2. HeaderPage = nouvellePage (on écrit le nouveau head dans la header)
-            ByteBuffer.wrap(headerBuffer, offset, 4).putInt(newPageId.getFileIdx());
-            ByteBuffer.wrap(headerBuffer, offset+4, 4).putInt(newPageId.getPageIdx());
-            bufferManager.FreePage(newPageId, true);
+            // 4. La page pointe vers rien dans la liste chainée au début (valeurs fictives pour next/prev page)
+            int base = nbSlotsPerDataPage;
+            // Ici, on réserve 2 PageId (next/prev) stockés sur 2*8 octets (chaque int=4, donc 2 entiers par PageId)
+            // Pour le chaînage de la liste "pages ayant de la place" : on met (-1,-1), de même pour "pleines"
+            for (int i = 0; i < 4; i++) { // nextPageId (fileIdx=-1, pageIdx=-1)
+                dataBuffer.put(base++, (byte)0xFF);
+            }
+            for (int i = 0; i < 4; i++) { // prevPageId (fileIdx=-1, pageIdx=-1)
+                dataBuffer.put(base++, (byte)0xFF);
+            }
+
+            // 5. Met à jour la liste des pages "ayant encore de la place" dans la Header Page
+            // Extrait PageId courant de la première page "ayant de la place"
+            int offset = 2 * 4; // Le premier PageId (pleines, 0-7), le deuxième est (avec place, 8-15)
+            int freeListFileIdx = headerBuffer.getInt(offset);
+            int freeListPageIdx = headerBuffer.getInt(offset+4);
+
+            // Si la liste n'était pas vide, chaîner la nouvelle page en tête de liste :
+            // nouvellePage.next = ancien_tete
+            if (!(freeListFileIdx == -1 && freeListPageIdx == -1)) {
+                dataBuffer.putInt(nbSlotsPerDataPage, freeListFileIdx);     // next.fileIdx
+                dataBuffer.putInt(nbSlotsPerDataPage + 4, freeListPageIdx); // next.pageIdx
+            }
+            // HeaderPage = nouvellePage (on écrit le nouveau head dans la header)
+            headerBuffer.putInt(offset, newPageId.getFileIdx());
+            headerBuffer.putInt(offset+4, newPageId.getPageIdx());
         }
-        // Libère la HeaderPage (dirty)
-        bufferManager.FreePage(headerPageId, true);
 
     } catch (Exception e) {
         e.printStackTrace();
@@ -229,41 +249,34 @@ public class Relation {
 }
 
 public PageId getFreeDataPageId(int sizeRecord) {
-    try {
-        // On suppose que headerPageId est l'identifiant de la Header Page de la relation
-        byte[] headerBuffer = bufferManager.GetPage(headerPageId);
+    // On suppose que headerPageId est l'identifiant de la Header Page de la relation (lue en partagé)
+    try (PageHandle header = shared(headerPageId, null)) {
+        ByteBuffer headerBuffer = header.buffer();
 
         // Offset de la liste des pages "ayant de la place" dans la Header Page (deuxième PageId)
         int offset = 2 * 4; // Premier PageId (pleines), deuxième PageId (avec place)
-        int freeListFileIdx = ByteBuffer.wrap(headerBuffer, offset, 4).getInt();
-        int freeListPageIdx = ByteBuffer.wrap(headerBuffer, offset + 4, 4).getInt();
+        int freeListFileIdx = headerBuffer.getInt(offset);
+        int freeListPageIdx = headerBuffer.getInt(offset + 4);
 
-        // Parcours de la liste chaînée des pages "avec de la place"
+        // Parcours de la liste chaînée des pages "avec de la place" (PageId créé seulement pour le résultat)
         while (!(freeListFileIdx == -1 && freeListPageIdx == -1)) {
-            PageId candidatePageId = new PageId(freeListFileIdx, freeListPageIdx);
-            byte[] dataBuffer = bufferManager.GetPage(candidatePageId);
-
-            // Vérifie la bytemap de la page (indice 0 à nbSlotsPerDataPage-1)
-            for (int i = 0; i < nbSlotsPerDataPage; i++) {
-                if (dataBuffer[i] == 0) {
-                    // Slot libre trouvé, on suppose ici que sizeRecord rentre dans la page (vérif optionnelle)
-                    bufferManager.FreePage(candidatePageId, false); // On libère rapidement la page
-                    bufferManager.FreePage(headerPageId, false);    // Libère la header page
-                    return candidatePageId;
+            try (PageHandle page = shared(PageId.pack(freeListFileIdx, freeListPageIdx), null)) {
+                ByteBuffer dataBuffer = page.buffer();
+
+                // Vérifie la bytemap de la page (indice 0 à nbSlotsPerDataPage-1)
+                for (int i = 0; i < nbSlotsPerDataPage; i++) {
+                    if (dataBuffer.get(i) == 0) {
+                        // Slot libre trouvé, on suppose ici que sizeRecord rentre dans la page (vérif optionnelle)
+                        return new PageId(freeListFileIdx, freeListPageIdx); // les deux pages sont libérées en sortant des blocs
+                    }
                 }
-            }
-
-            // Passe à la page suivante dans la liste chaînée
-            int base = nbSlotsPerDataPage;
-            int nextFileIdx = ByteBuffer.wrap(dataBuffer, base, 4).getInt();
-            int nextPageIdx = ByteBuffer.wrap(dataBuffer, base + 4, 4).getInt();
 
-            bufferManager.FreePage(candidatePageId, false); // Libère la page de données
-
-            freeListFileIdx = nextFileIdx;
-            freeListPageIdx = nextPageIdx;
+                // Passe à la page suivante dans la liste chaînée
+                int base = nbSlotsPerDataPage;
+                freeListFileIdx = dataBuffer.getInt(base);
+                freeListPageIdx = dataBuffer.getInt(base + 4);
+            }
         }
-        bufferManager.FreePage(headerPageId, false);
 
     } catch (Exception e) {
         e.printStackTrace();
@@ -273,14 +286,14 @@ public PageId getFreeDataPageId(int sizeRecord) {
 }
 
 public RecordId writeRecordToDataPage(Record record, PageId pageId) {
-    try {
-        // 1. Accède à la page cible via le BufferManager
-        byte[] dataBuffer = bufferManager.GetPage(pageId);
+    // 1. Accède à la page cible en exclusif (marquée dirty à la fermeture du handle)
+    try (PageHandle page = exclusive(pageId)) {
+        ByteBuffer dataBuffer = page.buffer();
 
         // 2. Trouve le premier slot libre dans la bytemap
         int slotIdx = -1;
         for (int i = 0; i < nbSlotsPerDataPage; i++) {
-            if (dataBuffer[i] == 0) {
+            if (dataBuffer.get(i) == 0) {
                 slotIdx = i;
                 break;
             }
@@ -293,16 +306,12 @@ public RecordId writeRecordToDataPage(Record record, PageId pageId) {
                          + slotIdx * getFixedRecordSizeBytes();
 
         // 4. Ecrit le record dans le buffer à la bonne position
-        ByteBuffer buff = ByteBuffer.wrap(dataBuffer);
-        writeRecordToBuffer(record, buff, recordOffset);
+        writeRecordToBuffer(record, dataBuffer, recordOffset);
 
         // 5. Marque le slot comme utilisé dans la bytemap
-        dataBuffer[slotIdx] = 1;
-
-        // 6. Libère et marque la page comme dirty
-        bufferManager.FreePage(pageId, true);
+        dataBuffer.put(slotIdx, (byte) 1);
 
-        // 7. Retourne le RecordId correspondant à l'insertion
+        // 6. Retourne le RecordId correspondant à l'insertion
         return new RecordId(pageId, slotIdx);
 
     } catch (Exception e) {
@@ -312,28 +321,30 @@ public RecordId writeRecordToDataPage(Record record, PageId pageId) {
 }
 
 public List<Record> getRecordsInDataPage(PageId pageId) {
+    return getRecordsInDataPage(pageId, null);
+}
+
+// ring : anneau privé du parcours en cours (null = pool partagé)
+private List<Record> getRecordsInDataPage(PageId pageId, ScanRing ring) {
     List<Record> records = new ArrayList<>();
-    try {
-        // 1. Accéder à la page via BufferManager
-        byte[] dataBuffer = bufferManager.GetPage(pageId);
+    // 1. Accéder à la page en lecture (latch partagé, libéré en sortant du bloc)
+    try (PageHandle page = shared(pageId, ring)) {
+        ByteBuffer dataBuffer = page.buffer();
 
         // 2. Pour chaque slot de la bytemap, si occupé alors extraire le record correspondant
         int recordSize = getFixedRecordSizeBytes();
         for (int i = 0; i < nbSlotsPerDataPage; i++) {
-            if (dataBuffer[i] == 1) {
+            if (dataBuffer.get(i) == 1) {
                 int recordOffset = nbSlotsPerDataPage + i * recordSize;
-                ByteBuffer buff = ByteBuffer.wrap(dataBuffer);
 
                 // Crée un nouvel objet Record à remplir
-                // À chaque record trouve dans la page :
+                // À chaque record trouve dans la page :
                 Record rec = new Record();
-                readFromBuffer(rec, buff, recordOffset); // Ajoute toutes les colonnes
+                readFromBuffer(rec, dataBuffer, recordOffset); // Ajoute toutes les colonnes
                 records.add(rec);
 
             }
         }
-        // 3. Libérer la page après lecture
-        bufferManager.FreePage(pageId, false);
 
     } catch (Exception e) {
         e.printStackTrace();
@@ -342,51 +353,32 @@ public List<Record> getRecordsInDataPage(PageId pageId) {
 }
 
 public List<PageId> getDataPages() {
-    List<PageId> pages = new ArrayList<>();
-    try {
-        // Accède à la Header Page via BufferManager
-        byte[] headerBuffer = bufferManager.GetPage(headerPageId);
-
-        // Récupère la tête de la liste des pages "pleines"
-        int fullListFileIdx = ByteBuffer.wrap(headerBuffer, 0, 4).getInt();
-        int fullListPageIdx = ByteBuffer.wrap(headerBuffer, 4, 4).getInt();
-
-        // Récupère la tête de la liste des pages "ayant de la place"
-        int freeListFileIdx = ByteBuffer.wrap(headerBuffer, 8, 4).getInt();
-        int freeListPageIdx = ByteBuffer.wrap(headerBuffer, 12, 4).getInt();
-
-        // --------- Liste chaînée des pages "pleines" ----------
-        while (!(fullListFileIdx == -1 && fullListPageIdx == -1)) {
-            PageId pid = new PageId(fullListFileIdx, fullListPageIdx);
-            pages.add(pid);
-
-            byte[] dataBuffer = bufferManager.GetPage(pid);
-            int base = nbSlotsPerDataPage; // Offset du chaînage
-            int nextFileIdx = ByteBuffer.wrap(dataBuffer, base, 4).getInt();
-            int nextPageIdx = ByteBuffer.wrap(dataBuffer, base + 4, 4).getInt();
-
-            bufferManager.FreePage(pid, false);
-            fullListFileIdx = nextFileIdx;
-            fullListPageIdx = nextPageIdx;
-        }
-
-        // --------- Liste chaînée des pages "ayant de la place" ----------
-        while (!(freeListFileIdx == -1 && freeListPageIdx == -1)) {
-            PageId pid = new PageId(freeListFileIdx, freeListPageIdx);
-            pages.add(pid);
-
-            byte[] dataBuffer = bufferManager.GetPage(pid);
-            int base = nbSlotsPerDataPage; // Offset du chaînage
-            int nextFileIdx = ByteBuffer.wrap(dataBuffer, base, 4).getInt();
-            int nextPageIdx = ByteBuffer.wrap(dataBuffer, base + 4, 4).getInt();
+    return getDataPages(null);
+}
 
-            bufferManager.FreePage(pid, false);
-            freeListFileIdx = nextFileIdx;
-            freeListPageIdx = nextPageIdx;
+private List<PageId> getDataPages(ScanRing ring) {
+    List<PageId> pages = new ArrayList<>();
+    // Accède à la Header Page en lecture
+    try (PageHandle header = shared(headerPageId, null)) {
+        ByteBuffer headerBuffer = header.buffer();
+
+        // Têtes de la liste des pages "pleines" (offset 0) puis des pages "ayant de la place" (offset 8)
+        for (int headOffset : new int[] { 0, 8 }) {
+            int fileIdx = headerBuffer.getInt(headOffset);
+            int pageIdx = headerBuffer.getInt(headOffset + 4);
+
+            // --------- Parcours de la liste chaînée ----------
+            while (!(fileIdx == -1 && pageIdx == -1)) {
+                pages.add(new PageId(fileIdx, pageIdx)); // résultat ; le chaînage est suivi par identifiant long
+
+                try (PageHandle page = shared(PageId.pack(fileIdx, pageIdx), ring)) {
+                    int base = nbSlotsPerDataPage; // Offset du chaînage
+                    fileIdx = page.buffer().getInt(base);
+                    pageIdx = page.buffer().getInt(base + 4);
+                }
+            }
         }
 
-        bufferManager.FreePage(headerPageId, false);
-
     } catch (Exception e) {
         e.printStackTrace();
     }
@@ -412,78 +404,153 @@ public RecordId InsertRecord(Record record) {
 
 public List<Record> GetAllRecords() {
     List<Record> allRecords = new ArrayList<>();
-    List<PageId> pageIds = getDataPages();
-    for (PageId pid : pageIds) {
-        allRecords.addAll(getRecordsInDataPage(pid));
+    // Parcours complet : les pages de données passent par un anneau privé de frames (bm_scanring)
+    // pour ne pas éjecter les pages chaudes des autres utilisateurs du pool ; les pages suivantes
+    // sont annoncées au BufferManager pour être lues par anticipation (bm_readahead)
+    try (ScanRing ring = bufferManager.NewScanRing()) {
+        List<PageId> pageIds = getDataPages(ring);
+        int window = bufferManager.getReadAheadWindow(ring);
+        for (int i = 0; i < pageIds.size(); i++) {
+            if (window > 0) bufferManager.Prefetch(pageIds.subList(i + 1, Math.min(pageIds.size(), i + 1 + window)), ring);
+            allRecords.addAll(getRecordsInDataPage(pageIds.get(i), ring));
+        }
     }
     return allRecords;
 }
 
+/**
+ * Déplace les pages de la relation (Header Page comprise) vers des pages libres situées plus tôt
+ * dans leur fichier (DiskManager.AllocPageBefore) en corrigeant les chaînages, puis désalloue les
+ * anciennes pages. Utilisé par DBManager.Shrink ; les RecordId des records déplacés ne sont plus valides.
+ * @return nombre de pages déplacées
+ */
+public int relocatePages() throws IOException {
+    int moved = 0;
+    PageId target = diskManager.AllocPageBefore(headerPageId);
+    if (target != null) {
+        copyPage(headerPageId, target);
+        bufferManager.DiscardPage(headerPageId);
+        diskManager.DeallocPage(headerPageId);
+        headerPageId = target;
+        moved++;
+    }
+    int nextOffset = nbSlotsPerDataPage;     // next de la page
+    int prevOffset = nbSlotsPerDataPage + 8; // prev de la page
+    // Liste des pages "pleines" (offset 0 de la Header Page) puis des pages "ayant de la place" (offset 8)
+    for (int headOffset : new int[] { 0, 8 }) {
+        Set<PageId> seen = new HashSet<>();
+        PageId prev = null; // null : le pointeur vers cur est dans la Header Page
+        PageId cur = readPageId(headerPageId, headOffset);
+        while (cur != null && seen.add(cur)) {
+            target = diskManager.AllocPageBefore(cur);
+            if (target != null) {
+                copyPage(cur, target);
+                // le pointeur vers cur (Header Page ou prev.next) n'est remplacé que s'il désigne encore cur
+                if (!replacePageId(prev == null ? headerPageId : prev, prev == null ? headOffset : nextOffset, cur, target)) {
+                    bufferManager.DiscardPage(target);
+                    diskManager.DeallocPage(target);
+                    break; // chaîne modifiée pendant le parcours : la suite attendra le prochain Shrink
+                }
+                PageId next = readPageId(target, nextOffset);
+                if (next != null) replacePageId(next, prevOffset, cur, target);
+                bufferManager.DiscardPage(cur);
+                diskManager.DeallocPage(cur);
+                seen.add(target);
+                cur = target;
+                moved++;
+            }
+            prev = cur;
+            cur = readPageId(cur, nextOffset);
+        }
+    }
+    return moved;
+}
+
+private void copyPage(PageId from, PageId to) throws IOException {
+    try (PageHandle src = shared(from, null);
+         PageHandle dst = exclusive(to)) {
+        dst.buffer().put(0, src.buffer(), 0, dst.buffer().capacity());
+    }
+}
+
+// Lit un PageId (fileIdx, pageIdx) stocké à offset dans la page ; (-1,-1) = null
+private PageId readPageId(PageId page, int offset) throws IOException {
+    // lecture ponctuelle : optimiste, sans pin ni latch si la page est en cache
+    return bufferManager.ReadOptimistic(page.toLong(), bufferStats(), b -> pageIdAt(b, offset));
+}
+
+private static PageId pageIdAt(ByteBuffer b, int offset) {
+    int fileIdx = b.getInt(offset);
+    int pageIdx = b.getInt(offset + 4);
+    return (fileIdx == -1 && pageIdx == -1) ? null : new PageId(fileIdx, pageIdx);
+}
+
+// Remplace le PageId stocké à offset par value s'il vaut encore expected : lecture et écriture sous
+// un même handle exclusif, aucune mise à jour d'un autre thread ne peut s'intercaler ni être perdue
+private boolean replacePageId(PageId page, int offset, PageId expected, PageId value) throws IOException {
+    try (PageHandle h = exclusive(page)) {
+        ByteBuffer b = h.buffer();
+        if (!expected.equals(pageIdAt(b, offset))) return false;
+        b.putInt(offset, value.getFileIdx());
+        b.putInt(offset + 4, value.getPageIdx());
+        return true;
+    }
+}
+
 public void DeleteRecord(RecordId rid) {
     try {
         PageId pageId = rid.getPageId();
         int slotIdx = rid.getSlotIdx();
+        int offset = nbSlotsPerDataPage;
+        boolean isEmpty = true;
+        int nextFileIdx, nextPageIdx, prevFileIdx, prevPageIdx;
 
-        // 1. Charge la page et libère le slot
-        byte[] dataBuffer = bufferManager.GetPage(pageId);
-        dataBuffer[slotIdx] = 0;
+        // 1. Charge la page en exclusif et libère le slot
+        try (PageHandle page = exclusive(pageId)) {
+            ByteBuffer dataBuffer = page.buffer();
+            dataBuffer.put(slotIdx, (byte) 0);
 
-        // 2. Vérifie si la page est vide (tous slots à 0)
-        boolean isEmpty = true;
-        for (int i = 0; i < nbSlotsPerDataPage; i++) {
-            if (dataBuffer[i] == 1) {
-                isEmpty = false;
-                break;
+            // 2. Vérifie si la page est vide (tous slots à 0)
+            for (int i = 0; i < nbSlotsPerDataPage; i++) {
+                if (dataBuffer.get(i) == 1) {
+                    isEmpty = false;
+                    break;
+                }
             }
+
+            // 3a. Lis les pointeurs next et prev de la page (utiles si elle est à supprimer)
+            nextFileIdx = dataBuffer.getInt(offset);
+            nextPageIdx = dataBuffer.getInt(offset + 4);
+            prevFileIdx = dataBuffer.getInt(offset + 8);
+            prevPageIdx = dataBuffer.getInt(offset + 12);
         }
-        bufferManager.FreePage(pageId, true);
 
         if (isEmpty) {
             // 3. Désallouer la page et MAJ les listes doublement chaînées
-            // 3a. Lis les pointeurs next et prev dans la page à supprimer
-            byte[] delBuf = bufferManager.GetPage(pageId);
-            int offset = nbSlotsPerDataPage;
-            int nextFileIdx = ByteBuffer.wrap(delBuf, offset, 4).getInt();
-            int nextPageIdx = ByteBuffer.wrap(delBuf, offset + 4, 4).getInt();
-            int prevFileIdx = ByteBuffer.wrap(delBuf, offset + 8, 4).getInt();
-            int prevPageIdx = ByteBuffer.wrap(delBuf, offset + 12, 4).getInt();
-            bufferManager.FreePage(pageId, false);
-
             PageId next = (nextFileIdx != -1 && nextPageIdx != -1) ? new PageId(nextFileIdx, nextPageIdx) : null;
             PageId prev = (prevFileIdx != -1 && prevPageIdx != -1) ? new PageId(prevFileIdx, prevPageIdx) : null;
 
             // 3b. MAJ du next.prev et du prev.next
             if (next != null) {
-                byte[] nextBuf = bufferManager.GetPage(next);
-                ByteBuffer.wrap(nextBuf, offset + 8, 4).putInt(prevFileIdx);     // next.prev.fileIdx = prevFileIdx
-                ByteBuffer.wrap(nextBuf, offset + 12, 4).putInt(prevPageIdx);    // next.prev.pageIdx = prevPageIdx
-                bufferManager.FreePage(next, true);
+                try (PageHandle nextPage = exclusive(next)) {
+                    nextPage.buffer().putInt(offset + 8, prevFileIdx);     // next.prev.fileIdx = prevFileIdx
+                    nextPage.buffer().putInt(offset + 12, prevPageIdx);    // next.prev.pageIdx = prevPageIdx
+                }
             }
             if (prev != null) {
-                byte[] prevBuf = bufferManager.GetPage(prev);
-                ByteBuffer.wrap(prevBuf, offset, 4).putInt(nextFileIdx);    // prev.next.fileIdx = nextFileIdx
-                ByteBuffer.wrap(prevBuf, offset + 4, 4).putInt(nextPageIdx);// prev.next.pageIdx = nextPageIdx
-                bufferManager.FreePage(prev, true);
+                try (PageHandle prevPage = exclusive(prev)) {
+                    prevPage.buffer().putInt(offset, nextFileIdx);    // prev.next.fileIdx = nextFileIdx
+                    prevPage.buffer().putInt(offset + 4, nextPageIdx);// prev.next.pageIdx = nextPageIdx
+                }
             }
 
             // 3c. Si c'était la tête de liste ("head"), MAJ la HeaderPage
             // Ici on suppose que la liste "pages ayant de la place" démarre à l'offset 8 dans la HeaderPage
-            byte[] headerBuffer = bufferManager.GetPage(headerPageId);
-            // Regarde si le head de la liste pointe sur pageId
-            int headFileIdx = ByteBuffer.wrap(headerBuffer, 8, 4).getInt();
-            int headPageIdx = ByteBuffer.wrap(headerBuffer, 12, 4).getInt();
-            if (headFileIdx == pageId.getFileIdx() && headPageIdx == pageId.getPageIdx()) {
-                // MAJ le head vers "next"
-                int newHeadFileIdx = (next != null) ? next.getFileIdx() : -1;
-                int newHeadPageIdx = (next != null) ? next.getPageIdx() : -1;
-                ByteBuffer.wrap(headerBuffer, 8, 4).putInt(newHeadFileIdx);
-                ByteBuffer.wrap(headerBuffer, 12, 4).putInt(newHeadPageIdx);
-                bufferManager.FreePage(headerPageId, true);
-            } else {
-                bufferManager.FreePage(headerPageId, false);
-            }
+            // (lecture et MAJ sous le même handle exclusif de la HeaderPage)
+            replacePageId(headerPageId, 8, pageId, next != null ? next : new PageId(-1, -1));
 
-            // 4. Désalloue la page sur disque via le DiskManager
+            // 4. Désalloue la page sur disque via le DiskManager (sa frame ne doit plus être écrite)
+            bufferManager.DiscardPage(pageId);
             diskManager.DeallocPage(pageId);
         }
 
@@ -0,0 +1,50 @@
+import java.util.function.IntPredicate;
+
+/**
+ * Politique de remplacement du BufferManager (bm_policy). Les frames sont désignées par leur
+ * index dans le pool ; la politique ne voit ni les pins ni le contenu des pages.
+ *
+ * onLoad/onAccess/onRemove peuvent être appelés par plusieurs threads en même temps ; victim est
+ * appelé sous le replacementLock du BufferManager et ne retire pas la frame choisie : elle sort
+ * de la politique par onRemove une fois éjectée (la réservation peut échouer si un autre thread
+ * l'épingle entre-temps). Toutes les opérations sont en O(1) amorti.
+ */
+interface ReplacementPolicy {
+    /** Une page vient d'être placée dans la frame */
+    void onLoad(int frame, PageId pageId);
+
+    /** La page de la frame vient d'être épinglée (accès en cache) */
+    void onAccess(int frame);
+
+    /** La frame a été vidée (éjection, DiscardPage, FlushBuffers) */
+    void onRemove(int frame);
+
+    /**
+     * Frame à éjecter parmi celles pour lesquelles evictable est vrai, -1 s'il n'y en a aucune
+     */
+    int victim(IntPredicate evictable);
+
+    /**
+     * Remplit out avec les prochaines frames que victim choisirait parmi celles pour lesquelles
+     * evictable est vrai, dans l'ordre, sans modifier l'état de la politique ; retourne leur nombre
+     * (éventuellement moins que out.length : une politique peut borner sa recherche).
+     * Utilisé par le BackgroundWriter pour nettoyer les victimes à venir (appelé hors replacementLock).
+     */
+    int upcoming(int[] out, IntPredicate evictable);
+
+    /** Nom tel qu'accepté par bm_policy */
+    String name();
+
+    /**
+     * Crée la politique nommée pour un pool de frames frames : LRU (défaut), MRU, CLOCK ou 2Q
+     */
+    static ReplacementPolicy create(String name, int frames) {
+        String p = name == null ? "" : name.trim().toUpperCase();
+        switch (p) {
+            case "MRU": return new LruPolicy(frames, true);
+            case "CLOCK": return new ClockPolicy(frames);
+            case "2Q": case "TWOQ": return new TwoQueuePolicy(frames);
+            default: return new LruPolicy(frames, false);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Anneau privé de frames pour un parcours séquentiel (stratégie « bulk read ») : obtenu par
+ * BufferManager.NewScanRing et passé à GetPage(pid, ring), il limite le parcours à quelques frames
+ * qu'il recycle dans l'ordre au lieu d'éjecter les pages chaudes du pool partagé.
+ *
+ * Les pages chargées par l'anneau restent visibles des autres threads (même table des pages) mais
+ * ne sont pas confiées à la politique de remplacement tant que l'anneau les détient. Une frame
+ * encore épinglée quand son tour revient est rendue au pool partagé et remplacée dans l'anneau.
+ *
+ * Un anneau est utilisé par un seul thread ; close() rend ses frames au pool.
+ */
+public final class ScanRing implements AutoCloseable {
+    private final BufferManager bm;
+    final int[] frames; // index des frames détenues, -1 = emplacement pas encore rempli
+    private int next = 0;
+
+    ScanRing(BufferManager bm, int size) {
+        this.bm = bm;
+        this.frames = new int[size];
+        java.util.Arrays.fill(frames, -1);
+    }
+
+    /** Emplacement dont c'est le tour d'être recyclé */
+    int advance() {
+        int slot = next;
+        next = (next + 1) % frames.length;
+        return slot;
+    }
+
+    public int size() {
+        return frames.length;
+    }
+
+    @Override
+    public void close() {
+        bm.releaseRing(this);
+    }
+}
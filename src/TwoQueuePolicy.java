@@ -0,0 +1,91 @@
+import java.util.LinkedHashSet;
+import java.util.function.IntPredicate;
+
+/**
+ * 2Q (Johnson et Shasha), résistante aux parcours séquentiels :
+ * - A1in : FIFO des pages chargées une seule fois (au plus Kin = 1/4 du pool avant d'être
+ *   prioritaire pour l'éjection) ; un nouvel accès n'y change rien ;
+ * - A1out : fantômes (PageId seuls, Kout = 1/2 du pool) des pages éjectées depuis A1in ;
+ * - Am : LRU des pages relues après être passées par A1out, c'est-à-dire réellement chaudes.
+ * Un parcours complet d'une table ne traverse que A1in et n'éjecte donc pas les pages de Am.
+ */
+class TwoQueuePolicy implements ReplacementPolicy {
+    private static final byte NONE = 0, A1IN = 1, AM = 2;
+
+    private final LruPolicy a1in;  // utilisée comme FIFO : pas de déplacement à l'accès
+    private final LruPolicy am;
+    private final byte[] queue;
+    private final PageId[] pages;
+    private final LinkedHashSet<PageId> a1out = new LinkedHashSet<>();
+    private final int kin;
+    private final int kout;
+    private int a1inSize = 0;
+
+    TwoQueuePolicy(int frames) {
+        this.a1in = new LruPolicy(frames, false);
+        this.am = new LruPolicy(frames, false);
+        this.queue = new byte[frames];
+        this.pages = new PageId[frames];
+        this.kin = Math.max(1, frames / 4);
+        this.kout = Math.max(1, frames / 2);
+    }
+
+    @Override
+    public synchronized void onLoad(int frame, PageId pageId) {
+        removeFromQueue(frame);
+        pages[frame] = pageId;
+        if (a1out.remove(pageId)) {
+            queue[frame] = AM;
+            am.onLoad(frame, pageId);
+        } else {
+            queue[frame] = A1IN;
+            a1in.onLoad(frame, pageId);
+            a1inSize++;
+        }
+    }
+
+    // Sans verrou, comme LruPolicy.onAccess : une lecture périmée de queue ne fait que perdre un
+    // accès ou dater une frame hors de Am (sa date est remplacée quand elle y est placée)
+    @Override
+    public void onAccess(int frame) {
+        if (queue[frame] == AM) am.onAccess(frame);
+    }
+
+    @Override
+    public synchronized void onRemove(int frame) {
+        if (queue[frame] == A1IN && pages[frame] != null) {
+            a1out.add(pages[frame]);
+            if (a1out.size() > kout) a1out.remove(a1out.iterator().next());
+        }
+        removeFromQueue(frame);
+        pages[frame] = null;
+    }
+
+    @Override
+    public synchronized int victim(IntPredicate evictable) {
+        int v = -1;
+        if (a1inSize > kin) v = a1in.victim(evictable);
+        if (v == -1) v = am.victim(evictable);
+        if (v == -1) v = a1in.victim(evictable);
+        return v;
+    }
+
+    @Override
+    public synchronized int upcoming(int[] out, IntPredicate evictable) {
+        if (a1inSize > kin) return am.fill(out, a1in.fill(out, 0, evictable), evictable);
+        return a1in.fill(out, am.fill(out, 0, evictable), evictable);
+    }
+
+    @Override
+    public String name() { return "2Q"; }
+
+    private void removeFromQueue(int frame) {
+        if (queue[frame] == A1IN) {
+            a1in.onRemove(frame);
+            a1inSize--;
+        } else if (queue[frame] == AM) {
+            am.onRemove(frame);
+        }
+        queue[frame] = NONE;
+    }
+}
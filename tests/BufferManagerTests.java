@@ -9,13 +9,41 @@ public class BufferManagerTests {
         boolean ok1 = testGetFreeFlushLRU();
         boolean ok2 = testReplacementMRU();
         boolean ok3 = testPolicySwitch();
+        boolean ok4 = testGetPagesParallel();
+        boolean ok5 = testConcurrentAccess();
+        boolean ok6 = testScanResistance();
+        boolean ok7 = testScanRing();
+        boolean ok8 = testOffHeapArena();
+        boolean ok9 = testBackgroundWriter();
+        boolean ok10 = testReadAhead();
+        boolean ok11 = testPageHandles();
+        boolean ok12 = testBufferStats();
+        boolean ok13 = testResize();
+        boolean ok14 = testLongPageTable();
+        boolean ok15 = testOptimisticRead();
+        boolean ok16 = testCheckpoint();
+        boolean ok17 = testLruRecency();
 
         System.out.println("\n=== Summary ===");
         System.out.println("LRU basic/flush : " + (ok1?"PASSED":"FAILED"));
         System.out.println("MRU replacement : " + (ok2?"PASSED":"FAILED"));
         System.out.println("Switch policy    : " + (ok3?"PASSED":"FAILED"));
+        System.out.println("GetPages async   : " + (ok4?"PASSED":"FAILED"));
+        System.out.println("Concurrent pool  : " + (ok5?"PASSED":"FAILED"));
+        System.out.println("CLOCK / 2Q       : " + (ok6?"PASSED":"FAILED"));
+        System.out.println("Scan ring        : " + (ok7?"PASSED":"FAILED"));
+        System.out.println("Off-heap arena   : " + (ok8?"PASSED":"FAILED"));
+        System.out.println("Background writer: " + (ok9?"PASSED":"FAILED"));
+        System.out.println("Read-ahead       : " + (ok10?"PASSED":"FAILED"));
+        System.out.println("Page handles     : " + (ok11?"PASSED":"FAILED"));
+        System.out.println("Buffer stats     : " + (ok12?"PASSED":"FAILED"));
+        System.out.println("Resize / budget  : " + (ok13?"PASSED":"FAILED"));
+        System.out.println("Long page table  : " + (ok14?"PASSED":"FAILED"));
+        System.out.println("Optimistic read  : " + (ok15?"PASSED":"FAILED"));
+        System.out.println("Checkpoint       : " + (ok16?"PASSED":"FAILED"));
+        System.out.println("LRU recency      : " + (ok17?"PASSED":"FAILED"));
 
-        System.exit((ok1 && ok2 && ok3) ? 0 : 5);
+        System.exit((ok1 && ok2 && ok3 && ok4 && ok5 && ok6 && ok7 && ok8 && ok9 && ok10 && ok11 && ok12 && ok13 && ok14 && ok15 && ok16 && ok17) ? 0 : 5);
     }
 
     private static DBConfig smallCfg(String dbpath) {
@@ -112,6 +140,46 @@ public class BufferManagerTests {
         }
     }
 
+    // LruPolicy : un accès en cache ne fait que dater la frame ; la recherche de victime la replace en
+    // queue au passage (LRU) ; en MRU, la première frame éjectable depuis la queue est choisie
+    private static boolean testLruRecency() {
+        System.out.println("-- testLruRecency --");
+        PageId pid = new PageId(0, 0);
+        LruPolicy lru = new LruPolicy(4, false);
+        for (int f = 0; f < 3; f++) lru.onLoad(f, pid);
+        lru.onAccess(0);
+        int v1 = lru.victim(f -> true);          // 1 : la plus ancienne non relue
+        lru.onRemove(v1);
+        lru.onLoad(3, pid);
+        lru.onAccess(2);
+        int[] next = new int[3];
+        int n = lru.upcoming(next, f -> true);   // 0, 3 puis 2 (relue)
+        int v2 = lru.victim(f -> true);          // 0 : relue avant le chargement de 3, puis plus touchée
+        int v3 = lru.victim(f -> f != 0 && f != 3); // 2, seule éjectable, même relue
+        boolean lruOk = v1 == 1 && n == 3 && next[0] == 0 && next[1] == 3 && next[2] == 2 && v2 == 0 && v3 == 2;
+
+        // upcoming borné : 200 frames épinglées en tête ne sont pas toutes parcourues
+        LruPolicy big = new LruPolicy(300, false);
+        for (int f = 0; f < 300; f++) big.onLoad(f, pid);
+        int[] few = new int[4];
+        int[] visited = new int[1];
+        int nb = big.upcoming(few, f -> { visited[0]++; return f >= 200; });
+        lruOk &= nb == 0 && visited[0] < 200;
+        nb = big.upcoming(few, f -> f >= 30);
+        lruOk &= nb == 4 && few[0] == 30 && few[3] == 33;
+
+        LruPolicy mru = new LruPolicy(3, true);
+        for (int f = 0; f < 3; f++) mru.onLoad(f, pid);
+        mru.onAccess(1);
+        int m1 = mru.victim(f -> f != 2);        // 1 : relue, trouvée après 2 (épinglée)
+        int m2 = mru.victim(f -> true);          // 1 : replacée en queue au passage précédent
+        int m3 = mru.victim(f -> f == 0);        // 0 : seule éjectable
+        boolean mruOk = m1 == 1 && m2 == 1 && m3 == 0;
+        System.out.println("LRU victims " + v1 + "," + v2 + "," + v3 + " upcoming " + Arrays.toString(next)
+                + " MRU victims " + m1 + "," + m2 + "," + m3);
+        return lruOk && mruOk;
+    }
+
     private static boolean testPolicySwitch() {
         System.out.println("-- testPolicySwitch --");
         cleanup();
@@ -127,6 +195,10 @@ public class BufferManagerTests {
             if (!"MRU".equals(bm.getPolicy())) return false;
             bm.SetCurrentReplacementPolicy("unknown"); // fallback to LRU
             if (!"LRU".equals(bm.getPolicy())) return false;
+            bm.SetCurrentReplacementPolicy("clock");
+            if (!"CLOCK".equals(bm.getPolicy())) return false;
+            bm.SetCurrentReplacementPolicy("2q");
+            if (!"2Q".equals(bm.getPolicy())) return false;
 
             dm.Finish();
             return true;
@@ -135,4 +207,883 @@ public class BufferManagerTests {
             return false;
         }
     }
+
+    private static boolean testGetPagesParallel() {
+        System.out.println("-- testGetPagesParallel --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 16, 4, 4, "LRU");
+        try {
+            DiskManager dm = new DiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+
+            List<PageId> pids = new ArrayList<>();
+            List<java.util.concurrent.CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                PageId p = dm.AllocPage();
+                pids.add(p);
+                byte[] b = new byte[cfg.getPagesize()];
+                Arrays.fill(b, (byte) (i + 1));
+                writes.add(dm.writePageAsync(p, b));
+            }
+            for (java.util.concurrent.CompletableFuture<Void> w : writes) w.join();
+
+            List<byte[]> datas = bm.GetPages(pids);
+            boolean ok = datas.size() == 3 && datas.get(0)[0] == 1 && datas.get(1)[5] == 2 && datas.get(2)[15] == 3;
+            for (PageId p : pids) bm.FreePage(p, false);
+
+            // 5 pages pour 4 frames : échec et aucune page ne doit rester épinglée
+            List<PageId> tooMany = new ArrayList<>(pids);
+            tooMany.add(dm.AllocPage());
+            tooMany.add(dm.AllocPage());
+            try {
+                bm.GetPages(tooMany);
+                ok = false;
+            } catch (IOException expected) {
+                for (int i = 0; i < bm.getBufferCount(); i++) ok &= bm.getFrame(i).pinCount == 0;
+            }
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // DiskManager dont les lectures sont lentes et comptées
+    private static class SlowDiskManager extends DiskManager {
+        final java.util.concurrent.atomic.AtomicInteger reads = new java.util.concurrent.atomic.AtomicInteger();
+        final java.util.concurrent.atomic.AtomicInteger asyncReads = new java.util.concurrent.atomic.AtomicInteger();
+        volatile long delayMs = 0;
+        SlowDiskManager(DBConfig cfg) { super(cfg); }
+        @Override
+        public void ReadPage(PageId pid, java.nio.ByteBuffer buff) throws IOException {
+            reads.incrementAndGet();
+            if (Thread.currentThread().getName().equals("dm-io")) asyncReads.incrementAndGet();
+            if (delayMs > 0) {
+                try { Thread.sleep(delayMs); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            }
+            super.ReadPage(pid, buff);
+        }
+    }
+
+    // Plusieurs threads : un seul chargement par page demandée en même temps, une page en cache est
+    // servie pendant qu'une lecture lente est en cours, et aucun contenu n'est mélangé sous éviction
+    private static boolean testConcurrentAccess() {
+        System.out.println("-- testConcurrentAccess --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 16, 4, 4, "LRU");
+        try {
+            SlowDiskManager dm = new SlowDiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            List<PageId> pids = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                PageId p = dm.AllocPage();
+                byte[] b = new byte[cfg.getPagesize()];
+                Arrays.fill(b, (byte) (i + 1));
+                dm.WritePage(p, b);
+                pids.add(p);
+            }
+
+            // 1) 8 threads en défaut sur la même page : une seule lecture
+            dm.delayMs = 100;
+            PageId cached = pids.get(1);
+            bm.GetPage(cached);
+            bm.FreePage(cached, false);
+            dm.reads.set(0);
+            java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+            List<Thread> ths = new ArrayList<>();
+            final boolean[] bad = new boolean[1];
+            for (int t = 0; t < 8; t++) {
+                Thread th = new Thread(() -> {
+                    try {
+                        start.await();
+                        byte[] d = bm.GetPage(pids.get(0));
+                        if (d[0] != 1) bad[0] = true;
+                        bm.FreePage(pids.get(0), false);
+                    } catch (Exception e) {
+                        bad[0] = true;
+                    }
+                });
+                ths.add(th);
+                th.start();
+            }
+            start.countDown();
+            Thread.sleep(20);
+            // 2) pendant la lecture lente, une page en cache est servie sans attendre
+            long t0 = System.nanoTime();
+            byte cachedByte = bm.GetPage(cached)[0];
+            long hitMs = (System.nanoTime() - t0) / 1_000_000;
+            bm.FreePage(cached, false);
+            for (Thread th : ths) th.join();
+            int sameReads = dm.reads.get();
+
+            // 3) accès aléatoires concurrents avec éviction : chaque page garde son contenu
+            dm.delayMs = 0;
+            ths.clear();
+            for (int t = 0; t < 6; t++) {
+                final long seed = t;
+                Thread th = new Thread(() -> {
+                    Random rnd = new Random(seed);
+                    try {
+                        for (int k = 0; k < 500; k++) {
+                            int i = rnd.nextInt(pids.size());
+                            byte[] d = bm.GetPage(pids.get(i));
+                            if (d[0] != (byte) (i + 1) || d[15] != (byte) (i + 1)) bad[0] = true;
+                            bm.FreePage(pids.get(i), rnd.nextBoolean());
+                        }
+                    } catch (IOException e) {
+                        // pool momentanément plein (4 frames, 6 threads) : acceptable
+                    } catch (Exception e) {
+                        bad[0] = true;
+                    }
+                });
+                ths.add(th);
+                th.start();
+            }
+            for (Thread th : ths) th.join();
+            bm.FlushBuffers();
+            byte[] r = new byte[cfg.getPagesize()];
+            boolean disk = true;
+            for (int i = 0; i < pids.size(); i++) {
+                dm.ReadPage(pids.get(i), r);
+                disk &= r[0] == (byte) (i + 1);
+            }
+            boolean unpinned = true;
+            for (int i = 0; i < bm.getBufferCount(); i++) unpinned &= bm.getFrame(i).pinCount == 0;
+            dm.Finish();
+            System.out.println("sameReads=" + sameReads + " hitMs=" + hitMs + " bad=" + bad[0] + " disk=" + disk + " unpinned=" + unpinned);
+            return sameReads == 1 && hitMs < 50 && cachedByte == 2 && !bad[0] && disk && unpinned;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Pages chaudes relues après éjection puis parcours de 20 pages sur un pool de 8 frames :
+    // 2Q garde les pages chaudes (parcours confiné à A1in), LRU et CLOCK les perdent
+    private static boolean testScanResistance() {
+        System.out.println("-- testScanResistance --");
+        boolean ok = true;
+        for (String policy : new String[] { "LRU", "CLOCK", "2Q" }) {
+            cleanup();
+            DBConfig cfg = new DBConfig(".", 16, 4, 8, policy);
+            try {
+                SlowDiskManager dm = new SlowDiskManager(cfg);
+                dm.Init();
+                BufferManager bm = new BufferManager(cfg, dm);
+                List<PageId> pids = new ArrayList<>();
+                for (int i = 0; i < 32; i++) pids.add(dm.AllocPage());
+                List<PageId> hot = pids.subList(0, 2);
+                List<PageId> scan1 = pids.subList(2, 10); // fait passer les pages chaudes dans A1out (Kout = 4)
+                List<PageId> scan2 = pids.subList(12, 32);
+                for (PageId p : hot) { bm.GetPage(p); bm.FreePage(p, false); }
+                for (PageId p : scan1) { bm.GetPage(p); bm.FreePage(p, false); }
+                for (int k = 0; k < 3; k++) {
+                    for (PageId p : hot) { bm.GetPage(p); bm.FreePage(p, false); }
+                }
+                for (PageId p : scan2) { bm.GetPage(p); bm.FreePage(p, false); }
+                dm.reads.set(0);
+                for (PageId p : hot) { bm.GetPage(p); bm.FreePage(p, false); }
+                int hotReads = dm.reads.get();
+                System.out.println(policy + ": hot pages re-read after scan = " + hotReads);
+                if (policy.equals("2Q")) ok &= hotReads == 0;
+                else ok &= hotReads == 2;
+                dm.Finish();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    // Un parcours par anneau ne charge ses pages que dans ses propres frames : les pages chaudes
+    // restent en cache (LRU), une page épinglée quand son tour revient est rendue au pool, et close()
+    // libère les frames propres de l'anneau
+    private static boolean testScanRing() {
+        System.out.println("-- testScanRing --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 16, 4, 12, "LRU");
+        try {
+            SlowDiskManager dm = new SlowDiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            boolean ok = bm.NewScanRing(0) == null && bm.NewScanRing(10).size() == 3;
+            List<PageId> pids = new ArrayList<>();
+            for (int i = 0; i < 30; i++) pids.add(dm.AllocPage());
+            List<PageId> hot = pids.subList(0, 6);
+            for (PageId p : hot) { bm.GetPage(p); bm.FreePage(p, true); }
+
+            PageId pinned = pids.get(6);
+            try (ScanRing ring = bm.NewScanRing(2)) {
+                bm.GetPage(pinned, ring); // gardée épinglée pendant tout le parcours
+                for (PageId p : pids.subList(7, 30)) {
+                    bm.GetPage(p, ring);
+                    bm.FreePage(p, false);
+                }
+                int scanFrames = 0;
+                for (int i = 0; i < bm.getBufferCount(); i++) {
+                    PageId p = bm.getFrame(i).pageId;
+                    if (p != null && !hot.contains(p)) scanFrames++;
+                }
+                System.out.println("frames used by scan = " + scanFrames);
+                ok &= scanFrames == 3; // la page épinglée (rendue au pool) + les 2 frames de l'anneau
+            }
+            int cached = 0;
+            for (int i = 0; i < bm.getBufferCount(); i++) {
+                if (bm.getFrame(i).pageId != null) cached++;
+            }
+            ok &= cached == 7; // pages chaudes + page épinglée, les frames de l'anneau sont libres
+            bm.FreePage(pinned, false);
+
+            dm.reads.set(0);
+            for (PageId p : hot) { bm.GetPage(p); bm.FreePage(p, false); }
+            System.out.println("hot pages re-read after ring scan = " + dm.reads.get());
+            ok &= dm.reads.get() == 0;
+
+            // le contenu des pages chaudes (dirty) n'a pas été perdu
+            bm.FlushBuffers();
+            byte[] b = bm.GetPage(hot.get(0));
+            ok &= b.length == 16;
+            bm.FreePage(hot.get(0), false);
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // bm_offheap : frames directes, GetPage refusé, GetPageBuffer/FlushBuffers/relecture et une
+    // relation (insertions puis relecture de la page) fonctionnent comme avec le pool sur le tas
+    private static boolean testOffHeapArena() {
+        System.out.println("-- testOffHeapArena --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 64, 4, 4, "LRU");
+        cfg.setBm_offheap(true);
+        try {
+            DiskManager dm = new DiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            boolean ok = bm.isOffHeap() && bm.getFrame(0).buffer.isDirect() && bm.getFrame(0).data == null;
+            PageId p1 = dm.AllocPage();
+            try {
+                bm.GetPage(p1);
+                ok = false;
+            } catch (IllegalStateException expected) {}
+            java.nio.ByteBuffer b = bm.GetPageBuffer(p1);
+            ok &= b.isDirect() && b.capacity() == 64;
+            b.putInt(0, 0x12345678);
+            bm.FreePage(p1, true);
+            bm.FlushBuffers();
+            byte[] raw = new byte[64];
+            dm.ReadPage(p1, raw);
+            ok &= java.nio.ByteBuffer.wrap(raw).getInt(0) == 0x12345678;
+            ok &= bm.GetPageBuffer(p1).getInt(0) == 0x12345678;
+            bm.FreePage(p1, false);
+
+            PageId header = dm.AllocPage();
+            java.nio.ByteBuffer hb = bm.GetPageBuffer(header);
+            for (int k = 0; k < 4; k++) hb.putInt(4 * k, -1);
+            bm.FreePage(header, true);
+            Relation rel = new Relation("OFF", java.util.Arrays.asList(new ColumnInfo("x", ColumnType.INT)), header, 4, dm, bm);
+            RecordId rid = null;
+            for (int i = 0; i < 3; i++) {
+                Record rec = new Record();
+                rec.add(Integer.toString(100 + i));
+                rid = rel.InsertRecord(rec);
+            }
+            bm.FlushBuffers();
+            List<Record> recs = rel.getRecordsInDataPage(rid.getPageId());
+            System.out.println("off-heap records = " + recs.size());
+            ok &= recs.size() == 3 && recs.get(2).get(0).equals("102");
+
+            // Resize : les frames retirées gardent leur tranche, les agrandissements suivants la reprennent
+            bm.FlushBuffers();
+            int chunks = bm.getArenaChunks();
+            for (int round = 0; round < 5; round++) {
+                ok &= bm.Resize(1) == 1 && bm.Resize(4) == 4;
+            }
+            ok &= bm.getArenaChunks() == chunks && bm.getFrameSlots() == 4;
+            ok &= bm.Resize(6) == 6 && bm.getArenaChunks() == chunks + 1; // deux frames neuves : un bloc
+            for (int i = 0; i < 6; i++) ok &= bm.getFrame(i).buffer.isDirect();
+            ok &= bm.GetPageBuffer(p1).getInt(0) == 0x12345678;
+            bm.FreePage(p1, false);
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Écritures faites par un défaut de cache (éjection d'une victime dirty) et écritures groupées
+    private static class CountingDiskManager extends DiskManager {
+        final java.util.concurrent.atomic.AtomicInteger evictionWrites = new java.util.concurrent.atomic.AtomicInteger();
+        final java.util.concurrent.atomic.AtomicInteger runWrites = new java.util.concurrent.atomic.AtomicInteger();
+        CountingDiskManager(DBConfig cfg) { super(cfg); }
+        @Override
+        public void WritePage(PageId pid, java.nio.ByteBuffer buff) throws IOException {
+            evictionWrites.incrementAndGet();
+            super.WritePage(pid, buff);
+        }
+        @Override
+        public void WritePages(PageId first, java.nio.ByteBuffer[] buffs) throws IOException {
+            runWrites.incrementAndGet();
+            super.WritePages(first, buffs);
+        }
+    }
+
+    // cleanAhead écrit les prochaines victimes dirty (toutes les dirty au-delà de bm_dirtyratio) ;
+    // avec le thread actif, les défauts de cache suivants n'ont plus d'écriture à faire
+    private static boolean testBackgroundWriter() {
+        System.out.println("-- testBackgroundWriter --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 16, 4, 8, "LRU");
+        try {
+            CountingDiskManager dm = new CountingDiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            List<PageId> pids = new ArrayList<>();
+            for (int i = 0; i < 16; i++) pids.add(dm.AllocPage());
+            for (int i = 0; i < 8; i++) {
+                byte[] b = bm.GetPage(pids.get(i));
+                b[0] = (byte) (i + 1);
+                bm.FreePage(pids.get(i), i % 2 == 0); // pages paires dirty
+            }
+            // sous le seuil : seules les 3 prochaines victimes (pages 0, 1, 2) sont regardées
+            int written = bm.cleanAhead(3, 100);
+            boolean ok = written == 2 && !bm.getFrame(0).dirty && !bm.getFrame(2).dirty && bm.getFrame(4).dirty;
+            // au-delà du seuil : les 3 prochaines victimes dirty (4, 6), plus rien ensuite
+            written = bm.cleanAhead(3, 10);
+            ok &= written == 2 && bm.cleanAhead(3, 10) == 0;
+            byte[] raw = new byte[16];
+            dm.ReadPage(pids.get(6), raw);
+            ok &= raw[0] == 7;
+            System.out.println("cleanAhead ok = " + ok);
+            dm.Finish();
+
+            cleanup();
+            DBConfig tcfg = new DBConfig(".", 16, 4, 8, "CLOCK");
+            tcfg.setBm_writerdelay(5);
+            tcfg.setBm_writerpages(4);
+            dm = new CountingDiskManager(tcfg);
+            dm.Init();
+            bm = new BufferManager(tcfg, dm);
+            pids.clear();
+            for (int i = 0; i < 16; i++) pids.add(dm.AllocPage());
+            for (int i = 0; i < 8; i++) {
+                byte[] b = bm.GetPage(pids.get(i));
+                b[0] = (byte) (i + 1);
+                bm.FreePage(pids.get(i), true);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (bm.getBackgroundWrites() < 8 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            bm.Close();
+            dm.evictionWrites.set(0);
+            for (int i = 8; i < 16; i++) { bm.GetPage(pids.get(i)); bm.FreePage(pids.get(i), false); }
+            System.out.println("background writes = " + bm.getBackgroundWrites() + ", writes on misses = " + dm.evictionWrites.get());
+            ok &= bm.getBackgroundWrites() == 8 && dm.evictionWrites.get() == 0;
+            dm.ReadPage(pids.get(3), raw);
+            ok &= raw[0] == 4;
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Parcours séquentiel (croissant puis décroissant) : après deux défauts voisins, les pages
+    // suivantes sont lues en tâche de fond, une seule fois chacune ; Prefetch explicite et anneau
+    private static boolean testReadAhead() {
+        System.out.println("-- testReadAhead --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 16, 4, 16, "LRU");
+        cfg.setBm_readahead(4);
+        try {
+            SlowDiskManager dm = new SlowDiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            List<PageId> pids = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                PageId p = dm.AllocPage();
+                byte[] b = new byte[16];
+                b[0] = (byte) (i + 1);
+                dm.WritePage(p, b);
+                pids.add(p);
+            }
+            dm.delayMs = 5;
+            boolean ok = true;
+            for (int i = 0; i < 12; i++) {
+                byte[] b = bm.GetPage(pids.get(i));
+                ok &= b[0] == i + 1;
+                bm.FreePage(pids.get(i), false);
+            }
+            System.out.println("ascending: reads = " + dm.reads.get() + ", async = " + dm.asyncReads.get());
+            ok &= dm.asyncReads.get() >= 10; // pages 2..11 (et 12..15 en avance)
+            ok &= dm.reads.get() <= 12 + 4; // chaque page lue une seule fois
+
+            awaitPrefetches(bm);
+            bm.FlushBuffers();
+            dm.reads.set(0);
+            dm.asyncReads.set(0);
+            for (int i = 23; i >= 16; i--) {
+                byte[] b = bm.GetPage(pids.get(i));
+                ok &= b[0] == i + 1;
+                bm.FreePage(pids.get(i), false);
+            }
+            System.out.println("descending: reads = " + dm.reads.get() + ", async = " + dm.asyncReads.get());
+            ok &= dm.asyncReads.get() >= 6 && dm.reads.get() <= 8 + 4;
+
+            // Prefetch explicite : une lecture par page, un GetPage ensuite n'en refait pas
+            awaitPrefetches(bm);
+            bm.FlushBuffers();
+            dm.reads.set(0);
+            bm.Prefetch(Arrays.asList(pids.get(3), pids.get(9), pids.get(5)));
+            for (int i : new int[] { 9, 3, 5 }) {
+                ok &= bm.GetPage(pids.get(i))[0] == i + 1;
+                bm.FreePage(pids.get(i), false);
+            }
+            ok &= dm.reads.get() == 3;
+
+            // avec un anneau : la lecture anticipée reste dans ses frames
+            awaitPrefetches(bm);
+            bm.FlushBuffers();
+            try (ScanRing ring = bm.NewScanRing(4)) {
+                ok &= bm.getReadAheadWindow(ring) == 2;
+                for (int i = 0; i < 24; i++) {
+                    byte[] b = bm.GetPage(pids.get(i), ring);
+                    ok &= b[0] == i + 1;
+                    bm.FreePage(pids.get(i), false);
+                }
+                int used = 0;
+                for (int i = 0; i < bm.getBufferCount(); i++) {
+                    if (bm.getFrame(i).pageId != null) used++;
+                }
+                System.out.println("frames used by ring scan = " + used);
+                ok &= used <= 4;
+            }
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Handles partagés simultanés en lecture seule, handle exclusif bloquant jusqu'à sa fermeture,
+    // dirty + dépinglage au close (y compris sur exception dans le try-with-resources)
+    private static boolean testPageHandles() {
+        System.out.println("-- testPageHandles --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 64, 4, 4, "LRU");
+        try {
+            DiskManager dm = new DiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            PageId p = dm.AllocPage();
+            BufferManager.Frame f;
+            boolean ok = true;
+            try (PageHandle w = bm.GetPageExclusive(p)) {
+                f = w.frame;
+                w.buffer().putInt(0, 42);
+            }
+            ok &= f.dirty && f.pinCount == 0;
+
+            try (PageHandle a = bm.GetPageShared(p); PageHandle b = bm.GetPageShared(p)) {
+                ok &= !a.isExclusive() && a.buffer().getInt(0) == 42 && b.buffer().getInt(0) == 42;
+                ok &= f.pinCount == 2;
+                try {
+                    a.buffer().putInt(0, 1);
+                    ok = false;
+                } catch (java.nio.ReadOnlyBufferException expected) {}
+            }
+            ok &= f.pinCount == 0;
+
+            // un lecteur d'un autre thread attend la fermeture du handle exclusif
+            java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+            java.util.concurrent.atomic.AtomicInteger seen = new java.util.concurrent.atomic.AtomicInteger(-1);
+            Thread reader;
+            PageHandle w = bm.GetPageExclusive(p);
+            w.buffer().putInt(0, 7);
+            reader = new Thread(() -> {
+                started.countDown();
+                try (PageHandle r = bm.GetPageShared(p)) {
+                    seen.set(r.buffer().getInt(0));
+                } catch (IOException e) {
+                    seen.set(-2);
+                }
+            });
+            reader.start();
+            started.await();
+            Thread.sleep(50);
+            ok &= seen.get() == -1;
+            w.buffer().putInt(0, 8);
+            w.close();
+            w.close(); // sans effet
+            reader.join(5000);
+            System.out.println("reader saw " + seen.get());
+            ok &= seen.get() == 8 && f.pinCount == 0;
+            try {
+                w.buffer();
+                ok = false;
+            } catch (IllegalStateException expected) {}
+
+            try (PageHandle h = bm.GetPageShared(p)) {
+                ok &= !h.isExclusive();
+                throw new IllegalArgumentException("boom");
+            } catch (IllegalArgumentException expected) {}
+            ok &= f.pinCount == 0;
+
+            bm.FlushBuffers();
+            byte[] raw = new byte[64];
+            dm.ReadPage(p, raw);
+            ok &= java.nio.ByteBuffer.wrap(raw).getInt(0) == 8;
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // hits/misses, éjections (dont dirty), écritures, compteurs par relation et remise à zéro
+    private static boolean testBufferStats() {
+        System.out.println("-- testBufferStats --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 64, 4, 2, "LRU");
+        try {
+            DiskManager dm = new DiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            BufferStats st = bm.getStats();
+            PageId a = dm.AllocPage();
+            PageId b = dm.AllocPage();
+            PageId c = dm.AllocPage();
+            bm.GetPageBuffer(a); bm.FreePage(a, true);   // miss
+            bm.GetPageBuffer(a); bm.FreePage(a, false);  // hit
+            bm.GetPageBuffer(b); bm.FreePage(b, false);  // miss
+            bm.GetPageBuffer(c); bm.FreePage(c, false);  // miss, éjecte a (dirty)
+            boolean ok = st.getHits() == 1 && st.getMisses() == 3;
+            ok &= st.getEvictions() == 1 && st.getDirtyEvictions() == 1 && st.getWrites() == 1;
+            ok &= Math.abs(st.getHitRatio() - 0.25) < 1e-9 && st.getAverageMissMicros() > 0;
+
+            BufferStats.Counters rel = st.relation("R");
+            try (PageHandle h = bm.GetPageShared(c, null, rel)) { ok &= !h.isExclusive(); }  // hit
+            try (PageHandle h = bm.GetPageExclusive(a, rel)) { ok &= h.isExclusive(); }      // miss, éjecte b
+            ok &= rel.getHits() == 1 && rel.getMisses() == 1 && st.relation("R") == rel;
+            ok &= st.getHits() == 2 && st.getMisses() == 4 && st.getEvictions() == 2 && st.getDirtyEvictions() == 1;
+            bm.FlushBuffers();
+            ok &= st.getWrites() == 2;
+            String report = st.report();
+            System.out.print(report);
+            ok &= report.contains("R :") && st.getRelationNames().equals(java.util.Arrays.asList("R"));
+
+            st.reset();
+            ok &= st.getHits() == 0 && st.getMisses() == 0 && st.getWrites() == 0 && rel.getHits() == 0 && st.getHitRatio() == 0.0;
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Réduction (victimes réécrites, frames épinglées conservées), agrandissement, budget mémoire
+    private static boolean testResize() {
+        System.out.println("-- testResize --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 4096, 4, 4, "LRU");
+        try {
+            DiskManager dm = new DiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            PageId[] p = new PageId[8];
+            for (int i = 0; i < p.length; i++) p[i] = dm.AllocPage();
+            for (int i = 0; i < 4; i++) {
+                bm.GetPageBuffer(p[i]).putInt(0, 100 + i);
+                bm.FreePage(p[i], true);
+            }
+            boolean ok = bm.Resize(2) == 2 && bm.getBufferCount() == 2;
+            ok &= bm.getStats().getDirtyEvictions() == 2;
+            byte[] raw = new byte[4096];
+            dm.ReadPage(p[0], raw);
+            ok &= java.nio.ByteBuffer.wrap(raw).getInt(0) == 100; // p0, p1 (les plus anciennes) réécrites
+
+            bm.GetPageBuffer(p[2]);
+            bm.GetPageBuffer(p[3]);
+            ok &= bm.Resize(1) == 2; // les deux frames restantes sont épinglées
+            bm.FreePage(p[2], false);
+            bm.FreePage(p[3], false);
+
+            ok &= bm.Resize(6) == 6 && bm.getFrameSlots() == 6;
+            for (int i = 0; i < 6; i++) bm.FreePage(p[i], false);
+            for (int i = 0; i < 6; i++) {
+                ok &= bm.GetPageBuffer(p[i]).getInt(0) == (i < 4 ? 100 + i : 0);
+            }
+            ok &= bm.getStats().getEvictions() == 2; // six pages tiennent dans le pool agrandi
+            for (int i = 0; i < 6; i++) bm.FreePage(p[i], false);
+            bm.GetPageBuffer(p[6]); // pool plein : éjection par la politique reconstruite
+            bm.FreePage(p[6], false);
+            ok &= bm.getStats().getEvictions() == 3;
+
+            ok &= DBConfig.parseMemoryBudget("64K", 0) == 65536 && DBConfig.parseMemoryBudget("2g", 0) == 2L << 30
+                    && DBConfig.parseMemoryBudget("25%", 400) == 100 && DBConfig.parseMemoryBudget("x", 0) == -1;
+            ok &= bm.ResizeToBudget("12K") == 3;
+            DBConfig budget = new DBConfig(".", 4096, 4, 2, "LRU");
+            budget.setBm_memorybudget("1%");
+            budget.setBm_memorybudget("beaucoup"); // ignoré
+            long expected = Runtime.getRuntime().maxMemory() / 100 / 4096;
+            ok &= budget.getBm_memorybudget().equals("1%") && BufferManager.frameCount(budget) == Math.max(1, expected);
+            System.out.println("budget 1% = " + BufferManager.frameCount(budget) + " frames");
+            bm.FlushBuffers();
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Identifiants longs : pack/fromLong, LongIntMap (suppressions + rehash), GetPage(long)/FreePage(long)
+    // équivalents aux versions PageId, accès en cache sans allocation
+    private static boolean testLongPageTable() {
+        System.out.println("-- testLongPageTable --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 64, 4, 4, "LRU");
+        try {
+            boolean ok = PageId.fromLong(PageId.pack(3, -1)).equals(new PageId(3, -1))
+                    && new PageId(-1, 7).toLong() == PageId.pack(-1, 7) && PageId.pack(1, 2) != PageId.pack(2, 1);
+            LongIntMap map = new LongIntMap(4);
+            for (int i = 0; i < 1000; i++) ok &= map.putIfAbsent(PageId.pack(i % 7, i), i) == -1;
+            ok &= map.putIfAbsent(PageId.pack(3, 3), 99) == 3;
+            for (int i = 0; i < 1000; i += 2) ok &= map.remove(PageId.pack(i % 7, i), i);
+            ok &= !map.remove(PageId.pack(1, 1), 42) && map.size() == 500;
+            for (int i = 0; i < 1000; i++) ok &= map.get(PageId.pack(i % 7, i)) == (i % 2 == 0 ? -1 : i);
+
+            DiskManager dm = new DiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            PageId p = dm.AllocPage();
+            long key = p.toLong();
+            byte[] a = bm.GetPage(p);
+            byte[] b = bm.GetPage(key);
+            ok &= a == b;
+            a[0] = 42;
+            bm.FreePage(key, true);
+            bm.FreePage(p, false);
+            BufferManager.Frame f = bm.getFrame(0);
+            ok &= f.pinCount == 0 && f.dirty;
+            try (PageHandle h = bm.GetPageShared(key, null, null)) {
+                ok &= h.getPageKey() == key && h.getPageId().equals(p) && h.buffer().get(0) == 42;
+            }
+
+            com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+            for (int i = 0; i < 20000; i++) { bm.GetPage(key); bm.FreePage(key, false); } // échauffement
+            long before = mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < 100000; i++) { bm.GetPage(key); bm.FreePage(key, false); }
+            long allocated = mx.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            System.out.println("allocated on 100000 hits = " + allocated + " bytes");
+            ok &= allocated < 100000; // moins d'un octet par accès (aucun objet par accès)
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    private static boolean testOptimisticRead() {
+        System.out.println("-- testOptimisticRead --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 64, 4, 3, "LRU");
+        try {
+            DiskManager dm = new DiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            PageId hot = dm.AllocPage();
+            List<PageId> cold = new ArrayList<>();
+            for (int i = 0; i < 6; i++) cold.add(dm.AllocPage());
+
+            // défaut de cache : chargement par GetPageShared, puis lecture sans pin
+            boolean ok = bm.ReadOptimistic(hot, b -> b.getInt(0)) == 0;
+            ok &= bm.getStats().getOptimisticFallbacks() == 1;
+            try (PageHandle h = bm.GetPageExclusive(hot)) {
+                h.buffer().putInt(0, 7);
+                h.buffer().putInt(4, 7);
+            }
+            BufferManager.Frame f = bm.getFrame(0);
+            long hitsBefore = bm.getStats().getHits();
+            long touched = f.lastTouch;
+            ok &= bm.ReadOptimistic(hot, b -> f.pinCount == 0 && b.isReadOnly() ? b.getInt(0) : -1) == 7;
+            ok &= (f.version & 1) == 0;
+            // hit compté, lastTouch de la frame non touché
+            ok &= bm.getStats().getHits() == hitsBefore + 1 && f.lastTouch == touched;
+            bm.getStats().reset();
+            ok &= bm.getStats().getHits() == 0;
+            try {
+                bm.ReadOptimistic(hot, b -> b.getInt(1000));
+                ok = false;
+            } catch (IndexOutOfBoundsException expected) {
+                // page stable : l'erreur de reader est propagée
+            }
+
+            // la politique est prévenue : une page lue seulement sans pin reste en cache (LRU)
+            BufferManager lru = new BufferManager(cfg, dm);
+            lru.ReadOptimistic(hot, b -> b.getInt(0)); // chargée par GetPageShared, la plus ancienne
+            for (int i = 0; i < 2; i++) { lru.GetPage(cold.get(i)); lru.FreePage(cold.get(i), false); }
+            lru.ReadOptimistic(hot, b -> b.getInt(0));
+            lru.GetPage(cold.get(2));
+            lru.FreePage(cold.get(2), false);
+            long fallbacks = lru.getStats().getOptimisticFallbacks();
+            lru.ReadOptimistic(hot, b -> b.getInt(0));
+            ok &= fallbacks == 1 && lru.getStats().getOptimisticFallbacks() == 1 && lru.getStats().getEvictions() == 1;
+
+            // un écrivain (handle exclusif) et des éjections pendant les lectures : jamais de page incohérente
+            java.util.concurrent.atomic.AtomicBoolean stop = new java.util.concurrent.atomic.AtomicBoolean(false);
+            java.util.concurrent.atomic.AtomicInteger torn = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.atomic.AtomicReference<Throwable> error = new java.util.concurrent.atomic.AtomicReference<>();
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int v = 8; !stop.get(); v++) {
+                        try (PageHandle h = bm.GetPageExclusive(hot)) {
+                            h.buffer().putInt(0, v);
+                            h.buffer().putInt(4, v);
+                        }
+                        PageId c = cold.get(v % cold.size());
+                        bm.GetPage(c);
+                        bm.FreePage(c, false);
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            });
+            List<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(new Thread(() -> {
+                    try {
+                        while (!stop.get()) {
+                            long pair = bm.ReadOptimistic(hot, b -> ((long) b.getInt(0) << 32) | (b.getInt(4) & 0xFFFFFFFFL));
+                            if ((int) (pair >>> 32) != (int) pair) torn.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        error.set(t);
+                    }
+                }));
+            }
+            writer.start();
+            for (Thread t : readers) t.start();
+            Thread.sleep(300);
+            stop.set(true);
+            writer.join();
+            for (Thread t : readers) t.join();
+            System.out.println("torn=" + torn.get() + " retries=" + bm.getStats().getOptimisticRetries()
+                    + " fallbacks=" + bm.getStats().getOptimisticFallbacks() + " evictions=" + bm.getStats().getEvictions());
+            ok &= error.get() == null && torn.get() == 0 && bm.getStats().getEvictions() > 0 && bm.getStats().getHits() > 0;
+            for (int i = 0; i < bm.getFrameSlots(); i++) ok &= bm.getFrame(i).pinCount == 0 && (bm.getFrame(i).version & 1) == 0;
+            if (error.get() != null) error.get().printStackTrace();
+            dm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Checkpoint : pages dirty écrites en une écriture par suite contiguë, pool conservé ;
+    // Checkpointer : même chose en fond, au débit de bm_checkpointrate
+    private static boolean testCheckpoint() {
+        System.out.println("-- testCheckpoint --");
+        cleanup();
+        DBConfig cfg = new DBConfig(".", 64, 4, 8, "LRU");
+        try {
+            CountingDiskManager dm = new CountingDiskManager(cfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(cfg, dm);
+            List<PageId> pids = new ArrayList<>();
+            for (int i = 0; i < 8; i++) pids.add(dm.AllocPage());
+            int[] order = {5, 2, 0, 7, 4, 1, 3}; // page 6 reste propre : deux suites, 0..5 et 7
+            for (int i : order) {
+                byte[] b = bm.GetPage(pids.get(i));
+                b[0] = (byte) (i + 1);
+                bm.FreePage(pids.get(i), true);
+            }
+            bm.GetPage(pids.get(6));
+            bm.FreePage(pids.get(6), false);
+            long misses = bm.getStats().getMisses();
+
+            int written = bm.Checkpoint();
+            boolean ok = written == 7 && dm.runWrites.get() == 2 && dm.evictionWrites.get() == 0;
+            ok &= bm.getStats().getCheckpoints() == 1 && bm.getStats().getCheckpointWrites() == 7;
+            for (int i = 0; i < 8; i++) ok &= bm.getFrame(i).pageId != null && !bm.getFrame(i).dirty;
+            for (PageId p : pids) { bm.GetPage(p); bm.FreePage(p, false); }
+            ok &= bm.getStats().getMisses() == misses; // le cache est resté chaud
+            byte[] raw = new byte[64];
+            for (int i : order) {
+                dm.ReadPage(pids.get(i), raw);
+                ok &= raw[0] == i + 1;
+            }
+            ok &= bm.Checkpoint() == 0 && dm.runWrites.get() == 2;
+
+            // en fond : premier point de contrôle après 200 ms, puis 20 pages/s par lots de 2
+            DBConfig bcfg = new DBConfig(".", 64, 4, 8, "LRU");
+            bcfg.setBm_checkpointdelay(200);
+            bcfg.setBm_checkpointrate(20);
+            long start = System.nanoTime();
+            BufferManager bg = new BufferManager(bcfg, dm);
+            for (int i = 0; i < 8; i++) {
+                byte[] b = bg.GetPage(pids.get(i));
+                b[0] = (byte) (100 + i);
+                bg.FreePage(pids.get(i), true);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (bg.getStats().getCheckpointWrites() < 8 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            bg.Close();
+            System.out.println("background checkpoint of 8 pages at 20 pages/s done after " + elapsedMs + " ms");
+            ok &= bg.getStats().getCheckpointWrites() == 8 && elapsedMs >= 400;
+            for (int i = 0; i < 8; i++) ok &= bg.getFrame(i).pageId != null && !bg.getFrame(i).dirty;
+            for (int i = 0; i < 8; i++) {
+                dm.ReadPage(pids.get(i), raw);
+                ok &= raw[0] == 100 + i;
+            }
+            dm.Finish();
+
+            // suite plus longue que le buffer d'écriture du thread (256 Ko = 32 pages de 8 Ko) : deux écritures
+            cleanup();
+            DBConfig lcfg = new DBConfig(".", 8192, 4, 40, "LRU");
+            CountingDiskManager ldm = new CountingDiskManager(lcfg);
+            ldm.Init();
+            BufferManager lbm = new BufferManager(lcfg, ldm);
+            List<PageId> run = new ArrayList<>();
+            for (int i = 0; i < 40; i++) run.add(ldm.AllocPage());
+            for (int i = 0; i < 40; i++) {
+                byte[] b = lbm.GetPage(run.get(i));
+                b[0] = (byte) (i + 1);
+                b[8191] = (byte) (i + 1);
+                lbm.FreePage(run.get(i), true);
+            }
+            ok &= lbm.Checkpoint() == 40 && ldm.runWrites.get() == 2;
+            byte[] lraw = new byte[8192];
+            for (int i = 0; i < 40; i++) {
+                ldm.ReadPage(run.get(i), lraw);
+                ok &= lraw[0] == i + 1 && lraw[8191] == i + 1;
+            }
+            ldm.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Attend la fin des lectures anticipées en cours (frames épinglées par la lecture asynchrone)
+    private static void awaitPrefetches(BufferManager bm) throws InterruptedException {
+        for (int i = 0; i < bm.getBufferCount(); i++) {
+            while (bm.getFrame(i).pinCount != 0) Thread.sleep(1);
+        }
+    }
 }
@@ -1,9 +1,15 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 public class DBManagerTest {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // 1) Préparer la config et le DBManager
         DBConfig cfg = new DBConfig(".DBTEST", 4096, 4, 2, "LRU");
         DBManager manager = new DBManager(cfg);
@@ -72,6 +78,113 @@ public class DBManagerTest {
             throw new AssertionError("nbSlotsPerDataPage should be 5");
         }
 
+        // ---- Test Shrink ----
+        // Pages de la relation (Header Page + 3 pages de données) allouées après 5 pages ensuite libérées :
+        // Shrink doit les ramener en début de fichier, corriger les chaînages et tronquer le fichier
+        Path shrinkDir = Paths.get(".DBTEST", "shrink");
+        DBConfig scfg = new DBConfig(shrinkDir.toString(), 64, 4, 2, "LRU");
+        scfg.setDm_extentsize(64);
+        try {
+            DiskManager dm = new DiskManager(scfg);
+            dm.Init();
+            BufferManager bm = new BufferManager(scfg, dm);
+            List<PageId> fillers = new ArrayList<>();
+            for (int i = 0; i < 5; i++) fillers.add(dm.AllocPage());
+            PageId sHeader = dm.AllocPage();
+            byte[] hb = bm.GetPage(sHeader);
+            ByteBuffer.wrap(hb).putInt(-1).putInt(-1).putInt(-1).putInt(-1);
+            bm.FreePage(sHeader, true);
+            Relation sr = new Relation("S", cols, sHeader, 4, dm, bm);
+            for (int i = 0; i < 3; i++) sr.addDataPage();
+            for (PageId f : fillers) dm.DeallocPage(f);
+
+            DBManager sm = new DBManager(scfg);
+            sm.addTable(sr);
+            int released = sm.Shrink(dm, bm);
+            List<PageId> pages = sr.getDataPages();
+            boolean allLow = sr.getHeaderPageId().getPageIdx() < 5;
+            for (PageId p : pages) allLow &= p.getPageIdx() < 5;
+            int count = dm.getPageCount(0);
+            dm.Finish();
+            if (released != 5 || pages.size() != 3 || !allLow || count != 4) {
+                throw new AssertionError("Shrink: released=" + released + " pages=" + pages + " header=" + sr.getHeaderPageId() + " count=" + count);
+            }
+            DBManager reloaded = new DBManager(scfg);
+            reloaded.loadState();
+            if (!sr.getHeaderPageId().equals(reloaded.getTable("S").getHeaderPageId())) {
+                throw new AssertionError("Shrink: la Header Page déplacée doit être sauvegardée");
+            }
+        } finally {
+            if (Files.exists(shrinkDir)) {
+                Files.walk(shrinkDir).sorted(Comparator.reverseOrder()).forEach(p -> { try { Files.delete(p); } catch (IOException ignored) {} });
+            }
+        }
+
+        // ---- Test pools nommés ----
+        // La table LOOKUP liée au pool "hot" garde ses pages en cache pendant que BIG remplit le pool default
+        Path poolDir = Paths.get(".DBTEST", "pools");
+        DBConfig pcfg = new DBConfig(poolDir.toString(), 64, 4, 2, "LRU");
+        pcfg.setBm_pools("hot:4:MRU");
+        pcfg.setBm_pools("hot:x"); // invalide : ignoré
+        try {
+            DiskManager dm = new DiskManager(pcfg);
+            dm.Init();
+            BufferPools pools = new BufferPools(pcfg, dm);
+            if (!pools.names().equals(java.util.Arrays.asList("default", "hot")) || pools.get("hot").getBufferCount() != 4
+                    || !pools.get("hot").getPolicy().equals("MRU") || pools.getDefault().getBufferCount() != 2) {
+                throw new AssertionError("Pools: " + pools.names());
+            }
+            DBManager pm = new DBManager(pcfg);
+            Relation lookup = new Relation("LOOKUP", cols2, newHeader(dm, pools.getDefault()), 4, dm, pools.getDefault());
+            Relation big = new Relation("BIG", cols2, newHeader(dm, pools.getDefault()), 4, dm, pools.getDefault());
+            pm.addTable(lookup);
+            pm.addTable(big);
+            pm.bindTable("LOOKUP", "hot", pools);
+            // seules les pages de LOOKUP quittent le pool default, celles de BIG y restent en cache
+            boolean lookupCached = false, bigCached = false;
+            for (int i = 0; i < pools.getDefault().getBufferCount(); i++) {
+                PageId cached = pools.getDefault().getFrame(i).pageId;
+                lookupCached |= lookup.getHeaderPageId().equals(cached);
+                bigCached |= big.getHeaderPageId().equals(cached);
+            }
+            if (lookupCached || !bigCached) throw new AssertionError("Pools: bindTable ne doit vider que les pages de LOOKUP");
+            Record rec = new Record();
+            rec.add("1.5");
+            PageId lookupPage = lookup.InsertRecord(rec).getPageId();
+            for (int i = 0; i < 6; i++) big.addDataPage();
+            long misses = pools.get("hot").getStats().getMisses();
+            if (lookup.getRecordsInDataPage(lookupPage).size() != 1 || pools.get("hot").getStats().getMisses() != misses) {
+                throw new AssertionError("Pools: la page de LOOKUP doit rester dans le pool hot");
+            }
+            for (int i = 0; i < pools.getDefault().getBufferCount(); i++) {
+                if (lookupPage.equals(pools.getDefault().getFrame(i).pageId)) throw new AssertionError("Pools: page de LOOKUP dans default");
+            }
+            pm.saveState();
+            pools.FlushBuffers();
+            DBManager pm2 = new DBManager(pcfg);
+            pm2.loadState();
+            pm2.attach(dm, pools);
+            if (!pm2.getTable("LOOKUP").getPoolName().equals("hot") || pm2.getTable("LOOKUP").getBufferManager() != pools.get("hot")
+                    || pm2.getTable("BIG").getBufferManager() != pools.getDefault()) {
+                throw new AssertionError("Pools: la liaison doit être sauvegardée");
+            }
+            pools.Close();
+            dm.Finish();
+        } finally {
+            if (Files.exists(poolDir)) {
+                Files.walk(poolDir).sorted(Comparator.reverseOrder()).forEach(p -> { try { Files.delete(p); } catch (IOException ignored) {} });
+            }
+        }
+
         System.out.println("DBManagerTest: all inline tests passed.");
     }
+
+    // Header Page vide (têtes de listes à -1) pour une nouvelle relation
+    private static PageId newHeader(DiskManager dm, BufferManager bm) throws IOException {
+        PageId h = dm.AllocPage();
+        ByteBuffer b = bm.GetPageBuffer(h);
+        for (int k = 0; k < 4; k++) b.putInt(4 * k, -1);
+        bm.FreePage(h, true);
+        return h;
+    }
 }
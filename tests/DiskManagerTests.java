@@ -1,6 +1,9 @@
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DiskManagerTests {
     private static DBConfig cfg = new DBConfig(".", 16, 4);
@@ -20,13 +23,44 @@ public class DiskManagerTests {
         boolean ok2 = TestPersistence();
         System.out.println();
         boolean ok3 = TestGrowth();
+        System.out.println();
+        boolean ok4 = TestConcurrentIO();
+        System.out.println();
+        boolean ok5 = TestMemoryMapped();
+        System.out.println();
+        boolean ok6 = TestFreeSpaceAllocator();
+        System.out.println();
+        boolean ok7 = TestExtentGrowth();
+        System.out.println();
+        boolean ok8 = TestVectoredIO();
+        System.out.println();
+        boolean ok9 = TestCrashRecovery();
+        System.out.println();
+        boolean ok10 = TestDirectIO();
+        boolean ok11 = TestStriping();
+        boolean ok12 = TestCompression();
+        boolean ok13 = TestReclaim();
+        boolean ok14 = TestGroupSync();
+        boolean ok15 = TestCompressionConcurrent();
 
         System.out.println("\n=== Summary ===");
         System.out.println("Alloc/Write/Read test : " + (ok1?"PASSED":"FAILED"));
         System.out.println("Persistence test     : " + (ok2?"PASSED":"FAILED"));
         System.out.println("Growth test          : " + (ok3?"PASSED":"FAILED"));
+        System.out.println("Concurrent I/O test  : " + (ok4?"PASSED":"FAILED"));
+        System.out.println("Memory-mapped test   : " + (ok5?"PASSED":"FAILED"));
+        System.out.println("Free-space allocator : " + (ok6?"PASSED":"FAILED"));
+        System.out.println("Extent growth test   : " + (ok7?"PASSED":"FAILED"));
+        System.out.println("Vectored I/O test    : " + (ok8?"PASSED":"FAILED"));
+        System.out.println("Crash recovery test  : " + (ok9?"PASSED":"FAILED"));
+        System.out.println("Direct I/O test      : " + (ok10?"PASSED":"FAILED"));
+        System.out.println("Striping test        : " + (ok11?"PASSED":"FAILED"));
+        System.out.println("Compression test     : " + (ok12?"PASSED":"FAILED"));
+        System.out.println("Reclaim test         : " + (ok13?"PASSED":"FAILED"));
+        System.out.println("Group sync test      : " + (ok14?"PASSED":"FAILED"));
+        System.out.println("Compressed writers   : " + (ok15?"PASSED":"FAILED"));
 
-        if (ok1 && ok2 && ok3) System.exit(0); else System.exit(5);
+        if (ok1 && ok2 && ok3 && ok4 && ok5 && ok6 && ok7 && ok8 && ok9 && ok10 && ok11 && ok12 && ok13 && ok14 && ok15) System.exit(0); else System.exit(5);
     }
 
     // Helper: cleanup BinData
@@ -127,6 +161,634 @@ public class DiskManagerTests {
         }
     }
 
+    // Test 4: plusieurs threads lisent/écrivent des pages distinctes du même fichier en parallèle
+    public static boolean TestConcurrentIO() {
+        System.out.println("--- TestConcurrentIO ---");
+        cleanupBinData(cfg);
+        DiskManager dm = new DiskManager(cfg);
+        try {
+            dm.Init();
+            final int nThreads = 8, perThread = 16;
+            final PageId[] pids = new PageId[nThreads * perThread];
+            for (int i = 0; i < pids.length; i++) pids[i] = dm.AllocPage();
+
+            final boolean[] okByThread = new boolean[nThreads];
+            Thread[] threads = new Thread[nThreads];
+            for (int t = 0; t < nThreads; t++) {
+                final int tid = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        byte[] w = new byte[cfg.getPagesize()];
+                        byte[] r = new byte[cfg.getPagesize()];
+                        boolean ok = true;
+                        for (int round = 0; round < 20 && ok; round++) {
+                            for (int k = 0; k < perThread; k++) {
+                                PageId pid = pids[tid * perThread + k];
+                                Arrays.fill(w, (byte) (tid * 31 + k + round));
+                                dm.WritePage(pid, w);
+                                dm.ReadPage(pid, r);
+                                if (!Arrays.equals(w, r)) { ok = false; break; }
+                            }
+                        }
+                        okByThread[tid] = ok;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread th : threads) th.join();
+            boolean ok = true;
+            for (boolean b : okByThread) ok &= b;
+            System.out.println("All threads read back their own writes: " + ok);
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        } finally {
+            try { dm.Finish(); } catch (Exception ignored) {}
+        }
+    }
+
+    // Test 5: mode MMAP avec petits segments (4 pages) pour forcer les re-mappings à la croissance
+    public static boolean TestMemoryMapped() {
+        System.out.println("--- TestMemoryMapped ---");
+        cleanupBinData(cfg);
+        DBConfig mcfg = new DBConfig(".", 16, 4);
+        mcfg.setDm_iomode("MMAP");
+        mcfg.setDm_mmapchunk(64);
+        mcfg.setDm_extentsize(2 * 16); // petits extents : libérer la fin du fichier dépasse deux extents
+        try {
+            DiskManager dm = new DiskManager(mcfg);
+            dm.Init();
+            List<PageId> pids = new ArrayList<>();
+            byte[] buf = new byte[mcfg.getPagesize()];
+            for (int i = 0; i < 10; i++) {
+                PageId pid = dm.AllocPage();
+                pids.add(pid);
+                Arrays.fill(buf, (byte) (i + 1));
+                dm.WritePage(pid, buf);
+            }
+            byte[] read = new byte[mcfg.getPagesize()];
+            for (int i = 0; i < pids.size(); i++) {
+                dm.ReadPage(pids.get(i), read);
+                java.nio.ByteBuffer view = dm.MapPage(pids.get(i));
+                if (read[0] != (byte) (i + 1) || view == null || view.get(0) != (byte) (i + 1)) {
+                    System.out.println("Mismatch on " + pids.get(i));
+                    dm.Finish();
+                    return false;
+                }
+            }
+            // libérer la fin du fichier ne le tronque pas tant qu'une vue peut être utilisée ; Reclaim le fait
+            Path data = Paths.get("BinData", "Data0.bin");
+            long sizeBefore = Files.size(data);
+            java.nio.ByteBuffer last = dm.MapPage(pids.get(9));
+            for (int i = 5; i < 10; i++) dm.DeallocPage(pids.get(i));
+            boolean kept = Files.size(data) == sizeBefore && last.get(0) == 10;
+            last = null;
+            boolean reclaimed = dm.Reclaim() > 0 && Files.size(data) < sizeBefore;
+            System.out.println("Tail kept while mapped: " + kept + ", reclaimed: " + reclaimed);
+            dm.Finish();
+            if (!kept || !reclaimed) return false;
+
+            // Relecture après réouverture
+            DiskManager dm2 = new DiskManager(mcfg);
+            dm2.Init();
+            dm2.ReadPage(pids.get(3), read);
+            boolean ok = read[0] == 4 && read[15] == 4;
+            System.out.println("Read back after restart: " + ok);
+            dm2.Finish();
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Test 6: l'allocateur réutilise toujours la plus petite page libre, puis étend le fichier
+    public static boolean TestFreeSpaceAllocator() {
+        System.out.println("--- TestFreeSpaceAllocator ---");
+        cleanupBinData(cfg);
+        DiskManager dm = new DiskManager(cfg);
+        try {
+            dm.Init();
+            List<PageId> pids = new ArrayList<>();
+            for (int i = 0; i < 300; i++) pids.add(dm.AllocPage());
+            dm.DeallocPage(pids.get(250));
+            dm.DeallocPage(pids.get(3));
+            dm.DeallocPage(pids.get(70));
+            PageId a = dm.AllocPage(), b = dm.AllocPage(), c = dm.AllocPage(), d = dm.AllocPage();
+            System.out.println("Reallocated: " + a + " " + b + " " + c + " then " + d);
+            boolean ok = a.equals(pids.get(3)) && b.equals(pids.get(70)) && c.equals(pids.get(250))
+                    && d.equals(new PageId(0, 300));
+
+            // Carte seule : grands fichiers, pages libres isolées
+            FreeSpaceMap fsm = new FreeSpaceMap();
+            fsm.grow(1 << 20);
+            for (int i = 0; i < (1 << 20); i++) fsm.allocate();
+            fsm.markFree(777777);
+            fsm.markFree(5000);
+            ok &= fsm.getFreeCount() == 2 && fsm.allocate() == 5000 && fsm.allocate() == 777777 && fsm.allocate() == -1;
+            System.out.println("FreeSpaceMap checks: " + ok);
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        } finally {
+            try { dm.Finish(); } catch (Exception ignored) {}
+        }
+    }
+
+    // Test 7: croissance par extents de 8 pages, queue libre tronquée au Finish
+    public static boolean TestExtentGrowth() {
+        System.out.println("--- TestExtentGrowth ---");
+        cleanupBinData(cfg);
+        DBConfig ecfg = new DBConfig(".", 16, 4);
+        ecfg.setDm_extentsize(8 * 16);
+        try {
+            DiskManager dm = new DiskManager(ecfg);
+            dm.Init();
+            dm.AllocPage();
+            int afterOne = dm.getPageCount(0);
+            for (int i = 0; i < 8; i++) dm.AllocPage();
+            int afterNine = dm.getPageCount(0);
+            dm.Finish();
+            int afterFinish = dm.getPageCount(0);
+            System.out.println("Pages: after 1 alloc=" + afterOne + ", after 9=" + afterNine + ", after Finish=" + afterFinish);
+
+            DiskManager dm2 = new DiskManager(ecfg);
+            dm2.Init();
+            PageId next = dm2.AllocPage();
+            System.out.println("Alloc after restart = " + next);
+            dm2.Finish();
+            return afterOne == 8 && afterNine == 16 && afterFinish == 9 && next.equals(new PageId(0, 9));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Test 8: WritePages/ReadPages sur une suite de pages contiguës
+    public static boolean TestVectoredIO() {
+        System.out.println("--- TestVectoredIO ---");
+        cleanupBinData(cfg);
+        DiskManager dm = new DiskManager(cfg);
+        try {
+            dm.Init();
+            PageId first = dm.AllocPage();
+            for (int i = 1; i < 6; i++) dm.AllocPage();
+            byte[][] out = new byte[6][cfg.getPagesize()];
+            for (int k = 0; k < out.length; k++) Arrays.fill(out[k], (byte) (40 + k));
+            dm.WritePages(first, out);
+
+            byte[][] in = new byte[6][cfg.getPagesize()];
+            dm.ReadPages(first, in);
+            boolean ok = Arrays.deepEquals(out, in);
+            byte[] single = new byte[cfg.getPagesize()];
+            dm.ReadPage(new PageId(first.getFileIdx(), first.getPageIdx() + 4), single);
+            ok &= Arrays.equals(out[4], single);
+            System.out.println("Vectored read equals vectored write: " + ok);
+            return ok;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        } finally {
+            try { dm.Finish(); } catch (Exception ignored) {}
+        }
+    }
+
+    // Test 9: arrêt brutal (pas de Finish) : la bitmap sur disque est celle du dernier Sync ; les
+    // allocations ne l'écrivent pas elles-mêmes
+    public static boolean TestCrashRecovery() {
+        System.out.println("--- TestCrashRecovery ---");
+        cleanupBinData(cfg);
+        DBConfig ccfg = new DBConfig(".", 16, 4);
+        ccfg.setDm_extentsize(16 * 16);
+        try {
+            DiskManager dm = new DiskManager(ccfg);
+            dm.Init();
+            List<PageId> pids = new ArrayList<>();
+            for (int i = 0; i < 10; i++) pids.add(dm.AllocPage());
+            dm.DeallocPage(pids.get(2));
+            Path meta = Paths.get(".").resolve("BinData").resolve("Data0.meta");
+            byte[] beforeWrite = Files.readAllBytes(meta);
+            boolean deferred = beforeWrite.length <= FreeSpaceMap.META_HEADER || beforeWrite[FreeSpaceMap.META_HEADER] == 0;
+            // une seule écriture de page (un chaînage vers les autres pages, par exemple) : la bitmap
+            // en attente part avant elle, sans Sync
+            dm.WritePage(pids.get(0), new byte[ccfg.getPagesize()]);
+            // ni Sync ni Finish : on simule un crash
+
+            DiskManager dm2 = new DiskManager(ccfg);
+            dm2.Init();
+            Set<PageId> live = new HashSet<>(pids);
+            live.remove(pids.get(2));
+            List<PageId> after = new ArrayList<>();
+            for (int i = 0; i < 8; i++) after.add(dm2.AllocPage());
+            System.out.println("After crash: " + after);
+            dm2.Finish();
+            boolean noDouble = true;
+            for (PageId p : after) noDouble &= !live.contains(p);
+            // aucune page encore utilisée n'est redistribuée ; la page libérée l'est, puis le reste de l'extent (page 10)
+            return deferred && noDouble && after.get(0).equals(pids.get(2)) && after.get(1).equals(new PageId(0, 10));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Test 10: mode DIRECT (pagesize 4096 alignée) puis repli automatique (pagesize 16 non alignée)
+    public static boolean TestDirectIO() {
+        System.out.println("--- TestDirectIO ---");
+        boolean ok = true;
+        for (int pagesize : new int[] { 4096, 16 }) {
+            cleanupBinData(cfg);
+            DBConfig dcfg = new DBConfig(".", pagesize, 4);
+            dcfg.setDm_iomode("DIRECT");
+            dcfg.setDm_extentsize(4 * pagesize);
+            try {
+                DiskManager dm = new DiskManager(dcfg);
+                dm.Init();
+                PageId first = dm.AllocPage();
+                for (int i = 1; i < 3; i++) dm.AllocPage();
+                byte[][] pages = new byte[3][pagesize];
+                for (int k = 0; k < 3; k++) Arrays.fill(pages[k], (byte) (k + 7));
+                dm.WritePage(first, pages[0]);
+                dm.WritePages(new PageId(first.getFileIdx(), first.getPageIdx() + 1), new byte[][] { pages[1], pages[2] });
+                dm.Finish();
+
+                DiskManager dm2 = new DiskManager(dcfg);
+                dm2.Init();
+                byte[][] in = new byte[3][pagesize];
+                dm2.ReadPages(first, in);
+                byte[] single = new byte[pagesize];
+                dm2.ReadPage(new PageId(first.getFileIdx(), first.getPageIdx() + 2), single);
+                dm2.Finish();
+                boolean eq = Arrays.deepEquals(pages, in) && Arrays.equals(pages[2], single);
+
+                // suite plus longue que le buffer de transfert d'un thread (256 Ko) : plusieurs morceaux alignés
+                DiskManager dm3 = new DiskManager(dcfg);
+                dm3.Init();
+                byte[][] run = new byte[80][pagesize];
+                PageId runFirst = dm3.AllocPage();
+                for (int k = 1; k < run.length; k++) dm3.AllocPage();
+                for (int k = 0; k < run.length; k++) Arrays.fill(run[k], (byte) k);
+                dm3.WritePages(runFirst, run);
+                byte[][] runIn = new byte[run.length][pagesize];
+                dm3.ReadPages(runFirst, runIn);
+                dm3.Finish();
+                boolean longRun = Arrays.deepEquals(run, runIn);
+                System.out.println("pagesize=" + pagesize + " read back after restart: " + eq + " long run: " + longRun);
+                ok &= eq && longRun;
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    // Test 11: deux répertoires de données, les pages consécutives alternent entre Data0 (stripe0) et Data1 (stripe1)
+    public static boolean TestStriping() {
+        System.out.println("--- TestStriping ---");
+        Path root = Paths.get("BinData", "stripes");
+        DBConfig scfg = new DBConfig(".", 64, 4);
+        scfg.setDm_datadirs("BinData/stripes/s0, BinData/stripes/s1");
+        try {
+            cleanupBinData(cfg);
+            DiskManager dm = new DiskManager(scfg);
+            dm.Init();
+            PageId[] pids = new PageId[4];
+            for (int i = 0; i < pids.length; i++) {
+                pids[i] = dm.AllocPage();
+                byte[] data = new byte[64];
+                Arrays.fill(data, (byte) (i + 1));
+                dm.WritePage(pids[i], data);
+            }
+            boolean alternate = pids[0].getFileIdx() != pids[1].getFileIdx()
+                    && pids[0].getFileIdx() == pids[2].getFileIdx()
+                    && pids[1].getFileIdx() == pids[3].getFileIdx();
+            dm.DeallocPage(pids[1]);
+            dm.Finish();
+            boolean placed = Files.exists(root.resolve("s0").resolve("Data0.bin"))
+                    && Files.exists(root.resolve("s1").resolve("Data1.bin"))
+                    && !Files.exists(root.resolve("s0").resolve("Data1.bin"));
+
+            // après redémarrage : relecture et réutilisation de la page libérée dans l'autre bande
+            DiskManager dm2 = new DiskManager(scfg);
+            dm2.Init();
+            byte[] in = new byte[64];
+            dm2.ReadPage(pids[2], in);
+            boolean readOk = in[0] == 3 && in[63] == 3;
+            PageId a = dm2.AllocPage();
+            PageId b = dm2.AllocPage();
+            boolean reused = b.equals(pids[1]) || a.equals(pids[1]);
+            dm2.Finish();
+            System.out.println("alternate=" + alternate + " placed=" + placed + " readOk=" + readOk + " reused=" + reused);
+            return alternate && placed && readOk && reused;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        } finally {
+            deleteTree(root);
+        }
+    }
+
+    // Test 12: dm_compression=LZ, pages creuses bien plus petites sur disque, relecture après redémarrage,
+    // page devenue incompressible (déplacée dans le fichier) puis de nouveau creuse
+    public static boolean TestCompression() {
+        System.out.println("--- TestCompression ---");
+        int pagesize = 4096;
+        DBConfig ccfg = new DBConfig(".", pagesize, 4);
+        ccfg.setDm_compression("LZ");
+        ccfg.setDm_extentsize(8 * pagesize);
+        try {
+            cleanupBinData(cfg);
+            DiskManager dm = new DiskManager(ccfg);
+            dm.Init();
+            PageId[] pids = new PageId[20];
+            byte[][] pages = new byte[pids.length][pagesize];
+            Random rnd = new Random(42);
+            for (int i = 0; i < pids.length; i++) {
+                pids[i] = dm.AllocPage();
+                // un record "VARCHAR" en début de page, le reste à zéro
+                for (int k = 0; k < 200; k += 2) pages[i][k] = (byte) ('a' + rnd.nextInt(26));
+                dm.WritePage(pids[i], pages[i]);
+            }
+            byte[] noise = new byte[pagesize];
+            rnd.nextBytes(noise);
+            dm.WritePage(pids[3], noise);
+            pages[3] = noise;
+            dm.WritePages(pids[5], new byte[][] { pages[5], pages[6] });
+            dm.Finish();
+
+            long stored = Files.size(Paths.get("BinData", "Data0.bin"));
+            long logical = (long) dm.getPageCount(0) * pagesize;
+            boolean smaller = stored * 3 < logical;
+
+            DiskManager dm2 = new DiskManager(ccfg);
+            dm2.Init();
+            boolean same = true;
+            byte[] in = new byte[pagesize];
+            for (int i = 0; i < pids.length; i++) {
+                dm2.ReadPage(pids[i], in);
+                same &= Arrays.equals(pages[i], in);
+            }
+            dm2.WritePage(pids[3], pages[4]); // retour à une page compressible, en place
+            dm2.ReadPage(pids[3], in);
+            same &= Arrays.equals(pages[4], in);
+            dm2.Finish();
+
+            byte[] comp = new byte[pagesize];
+            int len = PageCodec.compress(pages[0], 0, pagesize, comp);
+            byte[] out = new byte[pagesize];
+            PageCodec.decompress(comp, 0, len, out, 0, pagesize);
+            boolean codec = len > 0 && len < pagesize / 4 && Arrays.equals(pages[0], out)
+                    && PageCodec.compress(noise, 0, pagesize, new byte[pagesize - 1]) < 0;
+
+            System.out.println("stored=" + stored + " logical=" + logical + " smaller=" + smaller + " same=" + same + " codec=" + codec);
+            return smaller && same && codec;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        } finally {
+            cleanupBinData(cfg);
+        }
+    }
+
+    // Test 13: troncature de la queue libre (Reclaim, DeallocPage au-delà de deux extents) et AllocPageBefore
+    public static boolean TestReclaim() {
+        System.out.println("--- TestReclaim ---");
+        cleanupBinData(cfg);
+        DBConfig rcfg = new DBConfig(".", 16, 4);
+        rcfg.setDm_extentsize(4 * 16);
+        try {
+            DiskManager dm = new DiskManager(rcfg);
+            dm.Init();
+            PageId[] pids = new PageId[16];
+            for (int i = 0; i < pids.length; i++) pids[i] = dm.AllocPage();
+            // libérer les pages 4..14 : la queue libre dépasse deux extents, le fichier est tronqué en gardant un extent
+            for (int i = 4; i < 15; i++) dm.DeallocPage(pids[i]);
+            int afterDealloc = dm.getPageCount(0);
+            dm.DeallocPage(pids[15]);
+            int released = dm.Reclaim();
+            int afterReclaim = dm.getPageCount(0);
+            long size = Files.size(Paths.get("BinData", "Data0.bin"));
+            // trou en page 2 : une page de la fin peut y être déplacée
+            dm.DeallocPage(pids[2]);
+            PageId target = dm.AllocPageBefore(pids[3]);
+            PageId none = dm.AllocPageBefore(pids[1]);
+            PageId next = dm.AllocPage(); // le fichier tronqué peut de nouveau grandir
+            dm.Finish();
+            System.out.println("afterDealloc=" + afterDealloc + " released=" + released + " afterReclaim=" + afterReclaim
+                    + " size=" + size + " target=" + target + " none=" + none + " next=" + next);
+            return afterDealloc == 16 && afterReclaim == 4 && released > 0 && size == 4 * 16
+                    && target != null && target.getPageIdx() == 2 && none == null
+                    && next.getFileIdx() == 0 && next.getPageIdx() == 4;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Test 14: Sync ne force que s'il y a des écritures non couvertes, et les Sync concurrents se regroupent :
+    // les committers partent ensemble (CyclicBarrier) sur un force lent, le nombre de force physiques reste
+    // bien inférieur au nombre de Sync et chaque Sync ne rend la main qu'une fois sa propre écriture forcée
+    public static boolean TestGroupSync() {
+        System.out.println("--- TestGroupSync ---");
+        cleanupBinData(cfg);
+        SlowForceDiskManager dm = new SlowForceDiskManager(cfg);
+        try {
+            dm.Init();
+            PageId p = dm.AllocPage();
+            dm.WritePage(p, new byte[cfg.getPagesize()]);
+            dm.Sync();
+            long afterFirst = dm.getSyncCount();
+            dm.Sync(); // rien de nouveau : aucun force
+            boolean idle = dm.getSyncCount() == afterFirst;
+
+            final int threads = 8, rounds = 10;
+            PageId[] pids = new PageId[threads];
+            for (int t = 0; t < threads; t++) pids[t] = dm.AllocPage();
+            dm.Sync(); // bitmap des allocations : les force suivants ne concernent que les données
+            long forcesBefore = dm.store.forces.get();
+            CyclicBarrier start = new CyclicBarrier(threads);
+            List<Thread> ths = new ArrayList<>();
+            final boolean[] err = new boolean[1];
+            final boolean[] early = new boolean[1];
+            for (int t = 0; t < threads; t++) {
+                final PageId pid = pids[t];
+                Thread th = new Thread(() -> {
+                    byte[] data = new byte[cfg.getPagesize()];
+                    try {
+                        for (int r = 0; r < rounds; r++) {
+                            data[0] = (byte) r;
+                            start.await();
+                            dm.WritePage(pid, data);
+                            dm.Sync();
+                            if (dm.store.forcedUpTo() < dm.store.lastWrite.get()) early[0] = true;
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        err[0] = true;
+                    }
+                });
+                ths.add(th);
+                th.start();
+            }
+            for (Thread th : ths) th.join();
+            long forces = dm.store.forces.get() - forcesBefore;
+            dm.Finish();
+            int commits = threads * rounds;
+            System.out.println("afterFirst=" + afterFirst + " idle=" + idle + " forces for " + commits
+                    + " commits=" + forces + " returnedBeforeForce=" + early[0]);
+            return afterFirst == 1 && idle && !err[0] && !early[0] && forces >= rounds && forces * 2 <= commits;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // DiskManager dont le fichier de données compte ses écritures et force lentement
+    private static final class SlowForceDiskManager extends DiskManager {
+        volatile SlowForceStore store;
+
+        SlowForceDiskManager(DBConfig config) {
+            super(config);
+        }
+
+        @Override
+        PageStore openStore(Path p) throws IOException {
+            store = new SlowForceStore(super.openStore(p));
+            return store;
+        }
+    }
+
+    // Un force rend durables les écritures terminées avant son début ; il dure 20 ms
+    private static final class SlowForceStore implements PageStore {
+        private final PageStore inner;
+        private final AtomicLong writes = new AtomicLong();
+        private long forcedUpTo; // protégé par this
+        final AtomicLong forces = new AtomicLong();
+        final ThreadLocal<Long> lastWrite = ThreadLocal.withInitial(() -> 0L); // numéro de la dernière écriture du thread
+
+        SlowForceStore(PageStore inner) {
+            this.inner = inner;
+        }
+
+        synchronized long forcedUpTo() { return forcedUpTo; }
+
+        private void wrote() { lastWrite.set(writes.incrementAndGet()); }
+
+        @Override public void read(long offset, ByteBuffer dst) throws IOException { inner.read(offset, dst); }
+        @Override public void read(long offset, ByteBuffer[] dsts) throws IOException { inner.read(offset, dsts); }
+        @Override public void write(long offset, ByteBuffer src) throws IOException { inner.write(offset, src); wrote(); }
+        @Override public void write(long offset, ByteBuffer[] srcs) throws IOException { inner.write(offset, srcs); wrote(); }
+        @Override public void discard(long offset, long length) throws IOException { inner.discard(offset, length); }
+        @Override public long size() throws IOException { return inner.size(); }
+        @Override public void truncate(long size) throws IOException { inner.truncate(size); }
+        @Override public boolean isOpen() { return inner.isOpen(); }
+        @Override public void close() throws IOException { inner.close(); }
+
+        @Override
+        public void force() throws IOException {
+            long upTo = writes.get();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inner.force();
+            forces.incrementAndGet();
+            synchronized (this) {
+                forcedUpTo = Math.max(forcedUpTo, upTo);
+            }
+        }
+    }
+
+    // Test 15: dm_compression=LZ, écrivains concurrents dont les pages changent sans cesse de taille
+    // (creuse <-> incompressible) : chaque relecture rend la page écrite, jamais celle d'un autre thread
+    public static boolean TestCompressionConcurrent() {
+        System.out.println("--- TestCompressionConcurrent ---");
+        int pagesize = 4096;
+        DBConfig ccfg = new DBConfig(".", pagesize, 4);
+        ccfg.setDm_compression("LZ");
+        try {
+            cleanupBinData(cfg);
+            DiskManager dm = new DiskManager(ccfg);
+            dm.Init();
+            final int nThreads = 6, perThread = 4, rounds = 40;
+            final PageId[] pids = new PageId[nThreads * perThread];
+            for (int i = 0; i < pids.length; i++) pids[i] = dm.AllocPage();
+            final boolean[] okByThread = new boolean[nThreads];
+            Thread[] threads = new Thread[nThreads];
+            for (int t = 0; t < nThreads; t++) {
+                final int tid = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        byte[] r = new byte[pagesize];
+                        boolean ok = true;
+                        for (int round = 0; round < rounds && ok; round++) {
+                            for (int k = 0; k < perThread; k++) {
+                                int page = tid * perThread + k;
+                                byte[] w = concurrentPage(page, round, pagesize);
+                                dm.WritePage(pids[page], w);
+                                dm.ReadPage(pids[page], r);
+                                if (!Arrays.equals(w, r)) { ok = false; break; }
+                            }
+                        }
+                        okByThread[tid] = ok;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread th : threads) th.join();
+            dm.Finish();
+            boolean ok = true;
+            for (boolean b : okByThread) ok &= b;
+
+            // après réouverture, chaque page contient sa dernière version (aucun emplacement partagé)
+            DiskManager dm2 = new DiskManager(ccfg);
+            dm2.Init();
+            boolean same = true;
+            byte[] in = new byte[pagesize];
+            for (int i = 0; i < pids.length; i++) {
+                dm2.ReadPage(pids[i], in);
+                same &= Arrays.equals(concurrentPage(i, rounds - 1, pagesize), in);
+            }
+            dm2.Finish();
+            System.out.println("All threads read back their own writes: " + ok + " reopened=" + same);
+            return ok && same;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        } finally {
+            cleanupBinData(cfg);
+        }
+    }
+
+    // Contenu de la page au tour donné : creuse aux tours pairs, bruit incompressible aux tours impairs
+    private static byte[] concurrentPage(int page, int round, int pagesize) {
+        byte[] b = new byte[pagesize];
+        Random rnd = new Random(page * 1000L + round);
+        if (round % 2 == 0) {
+            for (int k = 0; k < 64 + page; k++) b[k] = (byte) ('a' + rnd.nextInt(26));
+        } else {
+            rnd.nextBytes(b);
+        }
+        b[0] = (byte) page;
+        b[1] = (byte) round;
+        return b;
+    }
+
+    private static void deleteTree(Path root) {
+        try {
+            if (!Files.exists(root)) return;
+            Files.walk(root).sorted(Comparator.reverseOrder()).forEach(p -> { try { Files.delete(p); } catch (IOException ignored) {} });
+        } catch (IOException ignored) {}
+    }
+
     // Merged from DiskManagerUnitTests: a very verbose, step-by-step demo.
     public static boolean VerboseDemo() throws Exception {
         System.out.println("=== DiskManager Unit Tests (commented, merged) ===\n");